@@ -0,0 +1,98 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.benchmark;
+
+import no.entur.kakka.geocoder.routes.pelias.elasticsearch.ElasticsearchCommand;
+import no.entur.kakka.geocoder.routes.pelias.elasticsearch.ElasticsearchCommandWriterService;
+import no.entur.kakka.geocoder.routes.pelias.json.PeliasDocument;
+import no.entur.kakka.geocoder.routes.pelias.kartverket.KartverketAddress;
+import no.entur.kakka.geocoder.routes.pelias.kartverket.KartverketAddressReader;
+import no.entur.kakka.geocoder.routes.pelias.mapper.kartverket.AddressToPeliasMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Reading, mapping and writing of Kartverket addresses, the largest source for the Pelias index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AddressBenchmark {
+
+    @Param({"100000"})
+    private int addressCount;
+
+    // Same as default pelias.insert.batch.size
+    @Param({"10000"})
+    private int batchSize;
+
+    private byte[] csv;
+
+    private Collection<KartverketAddress> addresses;
+
+    private List<ElasticsearchCommand> batch;
+
+    private AddressToPeliasMapper mapper = new AddressToPeliasMapper(2);
+
+    private ElasticsearchCommandWriterService writerService = new ElasticsearchCommandWriterService(false);
+
+    @Setup
+    public void setUp() throws Exception {
+        csv = GeocoderBenchmarkFixtures.addressCsv(addressCount);
+        addresses = new KartverketAddressReader().read(new ByteArrayInputStream(csv));
+        batch = addresses.stream().limit(batchSize).map(a -> ElasticsearchCommand.peliasIndexCommand(mapper.toPeliasDocument(a))).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Collection<KartverketAddress> readAddresses() {
+        return new KartverketAddressReader().read(new ByteArrayInputStream(csv));
+    }
+
+    @Benchmark
+    public List<PeliasDocument> toPeliasDocuments() {
+        List<PeliasDocument> documents = new ArrayList<>(addresses.size());
+        for (KartverketAddress address : addresses) {
+            documents.add(mapper.toPeliasDocument(address));
+        }
+        return documents;
+    }
+
+    @Benchmark
+    public void writeBulkCommands(Blackhole blackhole) {
+        blackhole.consume(writerService.write(batch));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.benchmark;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+import no.entur.kakka.geocoder.netex.TopographicPlaceAdapter;
+import no.entur.kakka.geocoder.services.AdminUnitRepository;
+import no.entur.kakka.geocoder.services.LocalitySpatialIndex;
+import no.entur.kakka.geocoder.sosi.SosiElementWrapperFactory;
+import no.entur.kakka.geocoder.sosi.SosiTopographicPlaceAdapterReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Reading of admin units from SOSI and reverse lookup of localities, as done for every address and place name.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AdminUnitBenchmark {
+
+    // Norway has roughly 400 municipalities
+    @Param({"20"})
+    private int gridSize;
+
+    @Param({"200"})
+    private int pointsPerSide;
+
+    @Param({"10000"})
+    private int lookupCount;
+
+    private static final double CELL_SIZE = 10000;
+
+    private byte[] sosi;
+
+    private AdminUnitRepository repository;
+
+    private Point[] points;
+
+    @Setup
+    public void setUp() throws Exception {
+        sosi = GeocoderBenchmarkFixtures.adminUnitsSosi(gridSize, CELL_SIZE, pointsPerSide);
+        repository = new LocalityRepository(readAdminUnits());
+
+        GeometryFactory factory = new GeometryFactory();
+        double[] coordinates = GeocoderBenchmarkFixtures.pointsInAdminUnitGrid(lookupCount, gridSize, CELL_SIZE);
+        points = new Point[lookupCount];
+        for (int i = 0; i < lookupCount; i++) {
+            points[i] = factory.createPoint(new Coordinate(coordinates[2 * i], coordinates[2 * i + 1]));
+        }
+    }
+
+    @Benchmark
+    public Collection<TopographicPlaceAdapter> readAdminUnits() {
+        return new SosiTopographicPlaceAdapterReader(new SosiElementWrapperFactory(), new ByteArrayInputStream(sosi)).read();
+    }
+
+    @Benchmark
+    public void getLocality(Blackhole blackhole) {
+        for (Point point : points) {
+            blackhole.consume(repository.getLocality(point));
+        }
+    }
+
+    /**
+     * Repository over the generated admin units, equivalent to the one built by AdminUnitRepositoryBuilder without the blob store.
+     */
+    private static class LocalityRepository implements AdminUnitRepository {
+
+        private final Collection<TopographicPlaceAdapter> adminUnits;
+
+        private final Map<String, String> names = new HashMap<>();
+
+        private final LocalitySpatialIndex localityIndex;
+
+        LocalityRepository(Collection<TopographicPlaceAdapter> adminUnits) {
+            this.adminUnits = adminUnits;
+            adminUnits.forEach(au -> names.put(au.getId(), au.getName()));
+            localityIndex = new LocalitySpatialIndex(adminUnits.stream().filter(au -> au.getType() == TopographicPlaceAdapter.Type.LOCALITY).collect(Collectors.toList()));
+        }
+
+        @Override
+        public String getAdminUnitName(String id) {
+            return names.get(id);
+        }
+
+        @Override
+        public TopographicPlaceAdapter getLocality(Point point) {
+            return localityIndex.getLocality(point);
+        }
+
+        @Override
+        public LocalitySpatialIndex.LookupStatistics getLookupStatistics() {
+            return localityIndex.getStatistics();
+        }
+
+        @Override
+        public Collection<TopographicPlaceAdapter> getAdminUnits() {
+            return adminUnits;
+        }
+    }
+}
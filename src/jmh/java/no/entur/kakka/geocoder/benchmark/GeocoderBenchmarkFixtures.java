@@ -0,0 +1,198 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.benchmark;
+
+import no.entur.kakka.geocoder.routes.pelias.mapper.coordinates.GeometryTransformer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Synthetic datasets for benchmarks, generated at scale from the test resources for the geocoder.
+ * <p>
+ * Generation is deterministic, so that results from different runs are comparable.
+ */
+public final class GeocoderBenchmarkFixtures {
+
+    private static final String RESOURCES = "src/test/resources/no/entur/kakka/geocoder/";
+
+    public static final String ADDRESSES = RESOURCES + "csv/addresses.csv";
+
+    public static final String TIAMAT_EXPORT = RESOURCES + "netex/tiamat-export.xml";
+
+    // Origin of generated admin unit grid in UTM 33 (meters)
+    private static final double GRID_EAST = 250000;
+
+    private static final double GRID_NORTH = 6600000;
+
+    private static final String UTM_ZONE = "33";
+
+    private static final Pattern NETEX_ID = Pattern.compile("((?:id|ref)=\")(NSR:[^\"]+)\"");
+
+    private GeocoderBenchmarkFixtures() {
+    }
+
+    /**
+     * Kartverket address CSV with the given number of addresses, copied from the test resource with unique ids and jittered coordinates.
+     */
+    public static byte[] addressCsv(int count) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(ADDRESSES), StandardCharsets.UTF_8);
+        String header = lines.get(0);
+        List<String> templates = lines.subList(1, lines.size());
+
+        Random random = new Random(42);
+        StringBuilder csv = new StringBuilder(header).append('\n');
+        for (int i = 0; i < count; i++) {
+            String[] fields = templates.get(i % templates.size()).split(";", -1);
+            fields[0] = Integer.toString(100000000 + i);
+            fields[17] = jitter(fields[17], random);
+            fields[18] = jitter(fields[18], random);
+            csv.append(String.join(";", fields)).append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Tiamat NeTEx export with stop places, topographic places and groups of stop places from the test resource repeated the given number of times.
+     */
+    public static byte[] tiamatExport(int copies) throws IOException {
+        String xml = new String(Files.readAllBytes(Paths.get(TIAMAT_EXPORT)), StandardCharsets.UTF_8);
+        for (String container : new String[]{"topographicPlaces", "groupsOfStopPlaces", "stopPlaces"}) {
+            xml = repeatContent(xml, container, copies);
+        }
+        return xml.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * SOSI file with a grid of square localities (Kommune), each bounded by a curve with the given number of points per side.
+     */
+    public static byte[] adminUnitsSosi(int gridSize, double cellSize, int pointsPerSide) {
+        StringBuilder sosi = new StringBuilder();
+        sosi.append(".HODE\n..TEGNSETT UTF-8\n..TRANSPAR\n...KOORDSYS 23\n...ORIGO-NØ 0  0\n...ENHET 0.01\n");
+
+        int serial = 1;
+        for (int row = 0; row < gridSize; row++) {
+            for (int col = 0; col < gridSize; col++) {
+                double west = GRID_EAST + col * cellSize;
+                double south = GRID_NORTH + row * cellSize;
+                int curveId = serial++;
+                sosi.append(".KURVE ").append(curveId).append(":\n..OBJTYPE Kommunegrense\n..NØ\n");
+                appendSquare(sosi, west, south, cellSize, pointsPerSide);
+
+                String municipality = String.format("%04d", 101 + row * gridSize + col);
+                sosi.append(".FLATE ").append(serial++).append(":\n..OBJTYPE Kommune\n..KOMMUNENUMMER ").append(municipality)
+                        .append("\n..KOMMUNENAVN\n...NAVN Kommune").append(municipality).append("\n...SPRÅK nor\n..REF :").append(curveId)
+                        .append("\n..NØ\n").append(toSosi(south + cellSize / 2)).append(' ').append(toSosi(west + cellSize / 2)).append('\n');
+            }
+        }
+        sosi.append(".SLUTT\n");
+        return sosi.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Random points within the admin unit grid, as longitude/latitude pairs.
+     */
+    public static double[] pointsInAdminUnitGrid(int count, int gridSize, double cellSize) throws Exception {
+        Random random = new Random(42);
+        double[] coordinates = new double[count * 2];
+        for (int i = 0; i < count; i++) {
+            coordinates[2 * i] = GRID_EAST + random.nextDouble() * gridSize * cellSize;
+            coordinates[2 * i + 1] = GRID_NORTH + random.nextDouble() * gridSize * cellSize;
+        }
+        GeometryTransformer.fromUTM(coordinates, UTM_ZONE);
+        return coordinates;
+    }
+
+    /**
+     * Random UTM 33 easting/northing pairs covering southern Norway.
+     */
+    public static double[] utmCoordinates(int count) {
+        Random random = new Random(42);
+        double[] coordinates = new double[count * 2];
+        for (int i = 0; i < count; i++) {
+            coordinates[2 * i] = 200000 + random.nextDouble() * 400000;
+            coordinates[2 * i + 1] = 6450000 + random.nextDouble() * 700000;
+        }
+        return coordinates;
+    }
+
+    public static String utmZone() {
+        return UTM_ZONE;
+    }
+
+    private static void appendSquare(StringBuilder sosi, double west, double south, double size, int pointsPerSide) {
+        double step = size / pointsPerSide;
+        for (int i = 0; i < pointsPerSide; i++) {
+            appendPoint(sosi, west + i * step, south);
+        }
+        for (int i = 0; i < pointsPerSide; i++) {
+            appendPoint(sosi, west + size, south + i * step);
+        }
+        for (int i = 0; i < pointsPerSide; i++) {
+            appendPoint(sosi, west + size - i * step, south + size);
+        }
+        for (int i = 0; i < pointsPerSide; i++) {
+            appendPoint(sosi, west, south + size - i * step);
+        }
+        appendPoint(sosi, west, south);
+    }
+
+    private static void appendPoint(StringBuilder sosi, double east, double north) {
+        sosi.append(toSosi(north)).append(' ').append(toSosi(east)).append('\n');
+    }
+
+    // Coordinates are written in units of 0.01 meters, see ENHET in header
+    private static long toSosi(double meters) {
+        return Math.round(meters * 100);
+    }
+
+    private static String jitter(String value, Random random) {
+        if (value == null || value.isEmpty()) {
+            return value;
+        }
+        return String.format(Locale.ROOT, "%.1f", Double.parseDouble(value) + (random.nextDouble() - 0.5) * 4000);
+    }
+
+    private static String repeatContent(String xml, String container, int copies) {
+        Matcher start = Pattern.compile("<" + container + "[^>]*>").matcher(xml);
+        if (!start.find()) {
+            return xml;
+        }
+        String endTag = "</" + container + ">";
+        int contentEnd = xml.indexOf(endTag, start.end());
+        String content = xml.substring(start.end(), contentEnd);
+
+        StringBuilder repeated = new StringBuilder(content);
+        for (int copy = 1; copy < copies; copy++) {
+            Matcher ids = NETEX_ID.matcher(content);
+            StringBuffer renamed = new StringBuffer();
+            while (ids.find()) {
+                ids.appendReplacement(renamed, Matcher.quoteReplacement(ids.group(1) + ids.group(2) + "-" + copy + "\""));
+            }
+            ids.appendTail(renamed);
+            repeated.append(renamed);
+        }
+        return xml.substring(0, start.end()) + repeated + xml.substring(contentEnd);
+    }
+}
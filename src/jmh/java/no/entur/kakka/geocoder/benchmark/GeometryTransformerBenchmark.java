@@ -0,0 +1,70 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.benchmark;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import no.entur.kakka.geocoder.routes.pelias.mapper.coordinates.GeometryTransformer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UTM to WGS84 conversion, per coordinate and for coordinate arrays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GeometryTransformerBenchmark {
+
+    @Param({"10000"})
+    private int coordinateCount;
+
+    private double[] utmCoordinates;
+
+    @Setup
+    public void setUp() {
+        utmCoordinates = GeocoderBenchmarkFixtures.utmCoordinates(coordinateCount);
+    }
+
+    @Benchmark
+    public void fromUTMPerCoordinate(Blackhole blackhole) throws Exception {
+        for (int i = 0; i < utmCoordinates.length; i += 2) {
+            blackhole.consume(GeometryTransformer.fromUTM(new Coordinate(utmCoordinates[i], utmCoordinates[i + 1]), GeocoderBenchmarkFixtures.utmZone()));
+        }
+    }
+
+    @Benchmark
+    public double[] fromUTMInPlace() throws Exception {
+        double[] coordinates = utmCoordinates.clone();
+        GeometryTransformer.fromUTM(coordinates, GeocoderBenchmarkFixtures.utmZone());
+        return coordinates;
+    }
+}
@@ -104,6 +104,14 @@ public class BlobStoreFiles {
             this.url = url;
         }
 
+        public String getMd5() {
+            return md5;
+        }
+
+        public void setMd5(String md5) {
+            this.md5 = md5;
+        }
+
         public Long getProviderId() {
             return providerId;
         }
@@ -144,6 +152,12 @@ public class BlobStoreFiles {
         @JsonProperty(required = false)
         private String url;
 
+        /**
+         * Base64 encoded MD5 digest of the content, as reported by the blob store.
+         */
+        @JsonIgnore
+        private String md5;
+
         @JsonIgnore
         public String getFileNameOnly() {
             if (name == null || name.endsWith("/")) {
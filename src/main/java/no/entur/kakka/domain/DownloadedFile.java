@@ -0,0 +1,62 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.domain;
+
+import java.io.File;
+
+/**
+ * Downloaded file with the size and MD5 digest computed while it was written.
+ */
+public class DownloadedFile {
+
+	private final File file;
+
+	private final String digest;
+
+	private final long size;
+
+	public DownloadedFile(File file, String digest, long size) {
+		this.file = file;
+		this.digest = digest;
+		this.size = size;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public String getName() {
+		return file.getName();
+	}
+
+	/**
+	 * Hex encoded MD5 digest of the content.
+	 */
+	public String getDigest() {
+		return digest;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return "DownloadedFile [file=" + file + ", digest=" + digest + ", size=" + size + "]";
+	}
+}
@@ -26,6 +26,8 @@ public class GeoCoderConstants {
 	public static final String GEOCODER_CURRENT_TASK = "RutebankenGeoCoderCurrentTask";
 	public static final String GEOCODER_RESCHEDULE_TASK = "RutebankgenGeoCoderRescheduleTask";
 	public static final String GEOCODER_ADMIN_UNIT_REPO="RutebankenGeoCoderAdminUnitRepository";
+	public static final String GEOCODER_BULK_STATISTICS="RutebankenGeoCoderBulkStatistics";
+	public static final String GEOCODER_SOURCE_STATISTICS="RutebankenGeoCoderSourceStatistics";
 
 	public static final GeoCoderTask KARTVERKET_ADDRESS_DOWNLOAD
 			= new GeoCoderTask(GeoCoderTask.Phase.DOWNLOAD_SOURCE_DATA, "direct:kartverketAddressDownload");
@@ -26,7 +26,7 @@ import no.entur.kakka.geocoder.netex.TopographicPlaceAdapter;
 import no.entur.kakka.geocoder.netex.geojson.GeoJsonSingleTopographicPlaceReader;
 import no.entur.kakka.geocoder.sosi.SosiElementWrapperFactory;
 import no.entur.kakka.geocoder.sosi.SosiTopographicPlaceAdapterReader;
-import no.entur.kakka.routes.file.ZipFileUtils;
+import no.entur.kakka.routes.file.ZipEntryIterator;
 import no.entur.kakka.security.TokenService;
 import no.entur.kakka.services.BlobStoreService;
 import no.entur.kakka.geocoder.geojson.GeojsonFeatureWrapperFactory;
@@ -45,8 +45,10 @@ import org.wololo.jts2geojson.GeoJSONWriter;
 
 import javax.ws.rs.core.MediaType;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Paths;
+import java.util.Collection;
 import java.util.stream.Collectors;
 
 /**
@@ -122,7 +124,6 @@ public class OrganisationRegistryAdministrativeUnitsUpdateRouteBuilder extends B
                 .log(LoggingLevel.DEBUG, getClass().getName(), "Fetching latest administrative units ...")
                 .setHeader(Constants.FILE_HANDLE, simple(blobStoreSubdirectoryForKartverket + "/administrativeUnits/" + adminUnitsArchiveFileName))
                 .to("direct:getBlob")
-                .process(e -> ZipFileUtils.unzipFile(e.getIn().getBody(InputStream.class), localWorkingDirectory))
                 .routeId("organisation-registry-fetch-admin-units-sosi");
 
         from("direct:fetchNeighbouringCountriesForOrgReg")
@@ -144,7 +145,7 @@ public class OrganisationRegistryAdministrativeUnitsUpdateRouteBuilder extends B
                 .routeId("organisation-registry-update-neighbouring-countries");
 
         from("direct:updateAdministrativeUnitsInOrgReg")
-                .process(e -> e.getIn().setBody(new SosiTopographicPlaceAdapterReader(sosiWrapperFactory, new File(localWorkingDirectory + "/" + adminUnitsFileName)).read().stream().map(tpa -> toAdministrativeZone(tpa, "KVE"))
+                .process(e -> e.getIn().setBody(readAdministrativeUnits(e.getIn().getBody(InputStream.class)).stream().map(tpa -> toAdministrativeZone(tpa, "KVE"))
                                                         .collect(Collectors.toList())))
                 .to("direct:updateAdministrativeZonesInOrgReg")
                 .routeId("organisation-registry-update-admin-units");
@@ -179,6 +180,23 @@ public class OrganisationRegistryAdministrativeUnitsUpdateRouteBuilder extends B
         return Utils.getHttp4(organisationRegistryUrl);
     }
 
+    /**
+     * Read admin units file directly from the archive, without extracting it to disk.
+     */
+    private Collection<TopographicPlaceAdapter> readAdministrativeUnits(InputStream archive) {
+        try (ZipEntryIterator entries = new ZipEntryIterator(archive, name -> name.endsWith(adminUnitsFileName))) {
+            ZipEntryIterator.Entry entry;
+            while ((entry = entries.nextEntry()) != null) {
+                if (adminUnitsFileName.equals(entry.getFileName())) {
+                    return new SosiTopographicPlaceAdapterReader(sosiWrapperFactory, entry.getInputStream()).read();
+                }
+            }
+        } catch (IOException ioe) {
+            throw new RuntimeException("Failed to read admin units archive: " + ioe.getMessage(), ioe);
+        }
+        throw new RuntimeException("Admin units file not found in archive: " + adminUnitsFileName);
+    }
+
     private File[] getGeojsonCountryFiles() {
         return FileUtils.listFiles(new File(localWorkingDirectory), new String[]{"geojson"}, false).stream().toArray(File[]::new);
     }
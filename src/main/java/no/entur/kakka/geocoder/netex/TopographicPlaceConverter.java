@@ -19,15 +19,36 @@ package no.entur.kakka.geocoder.netex;
 import org.rutebanken.netex.model.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Convert topographic places from a reader to a NeTEx file.
+ * <p>
+ * The reader is split into one reader per input file, run concurrently on the reader pool. Readers block when the bounded queue
+ * is full, so conversion is paced by the writer. When the last reader is done, an end of stream marker is put on the queue.
+ */
 @Component
 public class TopographicPlaceConverter {
     private static final int QUEUE_SIZE = 10000;
@@ -36,24 +57,93 @@ public class TopographicPlaceConverter {
 
     private String defaultTimeZone;
 
-    public TopographicPlaceConverter(@Value("${tiamat.netex.import.time.zone:CET}") String defaultTimeZone) {
+    private int marshalThreads;
+
+    private int marshalBatchSize;
+
+    private boolean formattedOutput;
+
+    private ExecutorService marshalExecutorService;
+
+    private ExecutorService readerExecutorService;
+
+    public TopographicPlaceConverter(String defaultTimeZone) {
+        this(defaultTimeZone, 2, 0, 500, true);
+    }
+
+    @Autowired
+    public TopographicPlaceConverter(@Value("${tiamat.netex.import.time.zone:CET}") String defaultTimeZone,
+                                            @Value("${tiamat.netex.reader.threads:4}") int readerThreads,
+                                            @Value("${tiamat.netex.marshal.threads:4}") int marshalThreads,
+                                            @Value("${tiamat.netex.marshal.batch.size:500}") int marshalBatchSize,
+                                            @Value("${tiamat.netex.formatted.output:false}") boolean formattedOutput) {
         this.defaultTimeZone = defaultTimeZone;
+        this.marshalThreads = marshalThreads;
+        this.marshalBatchSize = marshalBatchSize;
+        this.formattedOutput = formattedOutput;
+        this.readerExecutorService = Executors.newFixedThreadPool(Math.max(1, readerThreads), threadFactory("netex-reader-"));
+        if (marshalThreads > 0) {
+            marshalExecutorService = Executors.newFixedThreadPool(marshalThreads, threadFactory("netex-marshaller-"));
+        }
+    }
+
+    private CustomizableThreadFactory threadFactory(String prefix) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(prefix);
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        readerExecutorService.shutdownNow();
+        if (marshalExecutorService != null) {
+            marshalExecutorService.shutdownNow();
+        }
     }
 
     public void toNetexFile(TopographicPlaceReader input, String targetPath) {
-        try {
-            BlockingQueue<TopographicPlace> topographicPlaceQueue = new LinkedBlockingDeque<>(QUEUE_SIZE);
+        try (OutputStream outputStream = new FileOutputStream(new File(targetPath))) {
+            toNetex(input, outputStream, targetPath);
+        } catch (IOException e) {
+            throw new RuntimeException("Conversion to Netex failed with exception: " + e.getMessage(), e);
+        }
+    }
 
-            ReaderTask reader = new ReaderTask(topographicPlaceQueue, input);
-            new Thread(reader).start();
+    /**
+     * Convert topographic places to NeTEx publication delivery written to the output stream. The stream is not closed.
+     */
+    public void toNetex(TopographicPlaceReader input, OutputStream outputStream) {
+        toNetex(input, outputStream, "stream");
+    }
 
-            File target = new File(targetPath);
-            TopographicPlaceNetexWriter netexWriter = new TopographicPlaceNetexWriter();
-            netexWriter.stream(createPublicationDeliveryStructure(input), topographicPlaceQueue, new FileOutputStream(target));
+    private void toNetex(TopographicPlaceReader input, OutputStream outputStream, String target) {
+        PipelineStatistics statistics = new PipelineStatistics();
+        MeteredQueue topographicPlaceQueue = new MeteredQueue(QUEUE_SIZE, statistics);
+        List<Future<?>> readerTasks = new ArrayList<>();
+        try {
+            Collection<TopographicPlaceReader> readers = input.splitPerInput();
+            AtomicInteger remainingReaders = new AtomicInteger(readers.size());
+            for (TopographicPlaceReader reader : readers) {
+                readerTasks.add(readerExecutorService.submit(new ReaderTask(topographicPlaceQueue, reader, remainingReaders)));
+            }
+            if (readers.isEmpty()) {
+                topographicPlaceQueue.put(TopographicPlaceNetexWriter.END_OF_STREAM);
+            }
 
-            reader.verify();
+            TopographicPlaceNetexWriter netexWriter = new TopographicPlaceNetexWriter(marshalExecutorService, Math.max(1, marshalThreads * 2), marshalBatchSize, formattedOutput);
+            netexWriter.stream(createPublicationDeliveryStructure(input), topographicPlaceQueue, outputStream);
+
+            for (Future<?> readerTask : readerTasks) {
+                readerTask.get();
+            }
+            logger.info("Converted topographic places from " + input.getParticipantRef() + " to " + target + ": " + statistics);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Conversion to Netex failed with exception: " + e.getCause().getMessage(), e.getCause());
         } catch (Exception e) {
             throw new RuntimeException("Conversion to Netex failed with exception: " + e.getMessage(), e);
+        } finally {
+            // Readers still running when the writer fails would otherwise block forever on the full queue
+            readerTasks.forEach(t -> t.cancel(true));
         }
 
     }
@@ -79,42 +169,94 @@ public class TopographicPlaceConverter {
 
         private TopographicPlaceReader input;
 
-        private Exception exception;
+        private AtomicInteger remainingReaders;
 
-        public ReaderTask(BlockingQueue<TopographicPlace> queue, TopographicPlaceReader input) {
+        public ReaderTask(BlockingQueue<TopographicPlace> queue, TopographicPlaceReader input, AtomicInteger remainingReaders) {
             this.queue = queue;
             this.input = input;
+            this.remainingReaders = remainingReaders;
         }
 
         @Override
         public void run() {
             try {
                 input.addToQueue(queue);
-
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Reading topographic places interrupted", ie);
             } catch (Exception e) {
-                exception = e;
+                throw new RuntimeException("Failed to read topographic places: " + e.getMessage(), e);
             } finally {
-                try {
-                    queue.put(createPoisonPill());
-                } catch (InterruptedException ie) {
-                    logger.info("Reading topographic places interrupted", ie);
+                if (remainingReaders.decrementAndGet() == 0) {
+                    try {
+                        queue.put(TopographicPlaceNetexWriter.END_OF_STREAM);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        logger.info("Interrupted while signalling end of topographic places", ie);
+                    }
                 }
             }
+        }
+
+    }
 
+    /**
+     * Bounded queue recording number of places read and the max queue depth.
+     */
+    private static class MeteredQueue extends LinkedBlockingQueue<TopographicPlace> {
+
+        private final PipelineStatistics statistics;
+
+        MeteredQueue(int capacity, PipelineStatistics statistics) {
+            super(capacity);
+            this.statistics = statistics;
+        }
+
+        @Override
+        public void put(TopographicPlace topographicPlace) throws InterruptedException {
+            if (remainingCapacity() == 0) {
+                statistics.fullQueueWaits.incrementAndGet();
+            }
+            super.put(topographicPlace);
+            statistics.recordPut(size());
         }
 
-        public void verify() throws Exception {
-            if (exception != null) {
-                throw exception;
+        @Override
+        public boolean add(TopographicPlace topographicPlace) {
+            // Block instead of failing when the writer is behind
+            try {
+                put(topographicPlace);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while adding topographic place to queue", ie);
             }
+            return true;
         }
+    }
+
+    private static class PipelineStatistics {
+
+        private final long startTime = System.currentTimeMillis();
 
-        private TopographicPlace createPoisonPill() {
-            TopographicPlace topographicPlace = new TopographicPlace();
-            topographicPlace.setId("POISON");
-            return topographicPlace;
+        private final AtomicLong read = new AtomicLong();
+
+        private final AtomicLong maxQueueDepth = new AtomicLong();
+
+        private final AtomicLong fullQueueWaits = new AtomicLong();
+
+        void recordPut(int queueDepth) {
+            read.incrementAndGet();
+            maxQueueDepth.accumulateAndGet(queueDepth, Math::max);
         }
 
+        @Override
+        public String toString() {
+            // End of stream marker is counted as read
+            long places = Math.max(0, read.get() - 1);
+            long duration = Math.max(1, System.currentTimeMillis() - startTime);
+            return "places=" + places + ", duration=" + duration + "ms, placesPerSecond=" + (places * 1000 / duration)
+                           + ", maxQueueDepth=" + maxQueueDepth.get() + ", fullQueueWaits=" + fullQueueWaits.get();
+        }
     }
 
 }
@@ -0,0 +1,80 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.netex;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Http entity converting topographic places to NeTEx straight into the gzip compressed, chunked request stream, so that conversion
+ * and upload overlap and the publication delivery is never written to disk.
+ */
+public class TopographicPlaceNetexRequestEntity extends AbstractHttpEntity {
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final TopographicPlaceConverter converter;
+
+    private final TopographicPlaceReader reader;
+
+    public TopographicPlaceNetexRequestEntity(TopographicPlaceConverter converter, TopographicPlaceReader reader) {
+        this.converter = converter;
+        this.reader = reader;
+        setContentType("application/xml; charset=utf-8");
+        setContentEncoding("gzip");
+        setChunked(true);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return false;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    /**
+     * Only for clients not able to write entity to stream, as this requires the whole compressed payload to be kept in memory. As the
+     * topographic places can only be read once, either this or writeTo may be called, and only once.
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writeTo(outputStream);
+        return new ByteArrayInputStream(outputStream.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE);
+        converter.toNetex(reader, gzipOutputStream);
+        gzipOutputStream.finish();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
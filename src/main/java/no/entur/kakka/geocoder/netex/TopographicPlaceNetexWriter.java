@@ -26,12 +26,42 @@ import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
-import java.io.*;
+import javax.xml.stream.events.XMLEvent;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static javax.xml.bind.JAXBContext.newInstance;
 
+/**
+ * Write topographic places from a queue into a publication delivery, without holding all places in memory at once.
+ * <p>
+ * Places are taken from the queue in batches and each batch is marshalled to a byte buffer, on the marshal executor if one is given.
+ * Batches are written in the order they were taken from the queue, inserted at the end of the site frame of the publication delivery
+ * while copying it with StAX.
+ */
 public class TopographicPlaceNetexWriter {
 
     private static final Logger logger = LoggerFactory.getLogger(TopographicPlaceNetexWriter.class);
@@ -40,9 +70,55 @@ public class TopographicPlaceNetexWriter {
     private static final JAXBContext topographicPlaceContext = createContext(org.rutebanken.netex.model.TopographicPlace.class);
     private static final ObjectFactory netexObjectFactory = new ObjectFactory();
 
+    private static final XMLInputFactory xmlInputFactory = createXmlInputFactory();
+    private static final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
+    private static final XMLEventFactory xmlEventFactory = XMLEventFactory.newInstance();
+
+    private static final String SITE_FRAME = "SiteFrame";
+    private static final String TOPOGRAPHIC_PLACES = "topographicPlaces";
+
+    private static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Marker to put on the queue after the last topographic place.
+     */
+    public static final TopographicPlace END_OF_STREAM = new EndOfStream();
+
+    private final ExecutorService marshalExecutorService;
+
+    private final int maxBatchesInFlight;
+
+    private final int batchSize;
+
+    private final boolean formattedOutput;
+
+    private final BlockingQueue<ByteArrayOutputStream> bufferPool;
+
+    private final ThreadLocal<Marshaller> topographicPlaceMarshaller = ThreadLocal.withInitial(this::createTopographicPlaceMarshaller);
+
+    /**
+     * Create writer marshalling on the calling thread with formatted output.
+     */
+    public TopographicPlaceNetexWriter() {
+        this(null, 1, DEFAULT_BATCH_SIZE, true);
+    }
+
+    /**
+     * @param marshalExecutorService executor for marshalling batches of places, or null to marshal on the calling thread
+     * @param maxBatchesInFlight     max number of batches being marshalled or waiting to be written
+     * @param batchSize              max number of places per batch
+     * @param formattedOutput        whether to indent output. Compact output gives considerably smaller files
+     */
+    public TopographicPlaceNetexWriter(ExecutorService marshalExecutorService, int maxBatchesInFlight, int batchSize, boolean formattedOutput) {
+        this.marshalExecutorService = marshalExecutorService;
+        this.maxBatchesInFlight = Math.max(1, maxBatchesInFlight);
+        this.batchSize = Math.max(1, batchSize);
+        this.formattedOutput = formattedOutput;
+        this.bufferPool = new ArrayBlockingQueue<>(this.maxBatchesInFlight + 1);
+    }
 
     public void stream(PublicationDeliveryStructure publicationDeliveryStructure, BlockingQueue<TopographicPlace> topographicPlacesQueue, OutputStream outputStream) throws JAXBException, XMLStreamException, IOException, InterruptedException {
-        String publicationDeliveryStructureXml = writePublicationDeliverySkeletonToString(publicationDeliveryStructure);
+        byte[] publicationDeliveryStructureXml = writePublicationDeliverySkeleton(publicationDeliveryStructure);
         stream(publicationDeliveryStructureXml, topographicPlacesQueue, outputStream);
     }
 
@@ -55,88 +131,182 @@ public class TopographicPlaceNetexWriter {
         }
     }
 
-    private String writePublicationDeliverySkeletonToString(PublicationDeliveryStructure publicationDeliveryStructure) throws JAXBException {
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private byte[] writePublicationDeliverySkeleton(PublicationDeliveryStructure publicationDeliveryStructure) throws JAXBException {
         JAXBElement<PublicationDeliveryStructure> jaxPublicationDelivery = netexObjectFactory.createPublicationDelivery(publicationDeliveryStructure);
 
         ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
 
         Marshaller publicationDeliveryMarshaller = publicationDeliveryContext.createMarshaller();
 
-        publicationDeliveryMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+        publicationDeliveryMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, formattedOutput);
+        publicationDeliveryMarshaller.setProperty(Marshaller.JAXB_ENCODING, StandardCharsets.UTF_8.name());
         publicationDeliveryMarshaller.marshal(jaxPublicationDelivery, byteArrayOutputStream);
-        return byteArrayOutputStream.toString();
+        return byteArrayOutputStream.toByteArray();
     }
 
 
-    private Marshaller createTopographicPlaceMarshaller() throws JAXBException {
-        Marshaller topographicPlaceMarshaller = topographicPlaceContext.createMarshaller();
-        topographicPlaceMarshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
-        topographicPlaceMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-        topographicPlaceMarshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION, "");
-        return topographicPlaceMarshaller;
+    private Marshaller createTopographicPlaceMarshaller() {
+        try {
+            Marshaller marshaller = topographicPlaceContext.createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, formattedOutput);
+            marshaller.setProperty(Marshaller.JAXB_ENCODING, StandardCharsets.UTF_8.name());
+            marshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION, "");
+            return marshaller;
+        } catch (JAXBException e) {
+            throw new RuntimeException("Failed to create topographic place marshaller: " + e.getMessage(), e);
+        }
     }
 
 
     /**
      * In order to not hold all topographic places in memory at once, we need to marshal topographic place from a queue.
-     * Requires a publication delivery xml that contains newlines.
+     * Places are inserted at the end of the SiteFrame of the publication delivery xml.
      */
-    public void stream(String publicationDeliveryStructureXml, BlockingQueue<org.rutebanken.netex.model.TopographicPlace> topographicPlaces, OutputStream outputStream) throws JAXBException, XMLStreamException, IOException, InterruptedException {
+    public void stream(byte[] publicationDeliveryStructureXml, BlockingQueue<org.rutebanken.netex.model.TopographicPlace> topographicPlaces, OutputStream outputStream) throws JAXBException, XMLStreamException, IOException, InterruptedException {
 
-        OutputStreamWriter outputStreamWriter = new OutputStreamWriter(outputStream);
-        BufferedWriter bufferedWriter = new BufferedWriter(outputStreamWriter);
+        BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(outputStream, 1 << 16);
+        Writer writer = new OutputStreamWriter(bufferedOutputStream, StandardCharsets.UTF_8);
+        XMLEventReader eventReader = xmlInputFactory.createXMLEventReader(new ByteArrayInputStream(publicationDeliveryStructureXml), StandardCharsets.UTF_8.name());
+        XMLEventWriter eventWriter = xmlOutputFactory.createXMLEventWriter(writer);
 
         try {
-            Marshaller topographicPlaceMarshaller = createTopographicPlaceMarshaller();
-
-            String lineSeparator = System.getProperty("line.separator");
-            String[] publicationDeliveryLines = publicationDeliveryStructureXml.split(lineSeparator);
+            while (eventReader.hasNext()) {
+                XMLEvent event = eventReader.nextEvent();
 
-            for (int index = 0; index < publicationDeliveryLines.length; index++) {
-                String publicationDeliveryLine = publicationDeliveryLines[index];
-                logger.debug("Line: {}", publicationDeliveryLine);
-
-                if (publicationDeliveryLine.contains("</SiteFrame")) {
-                    marshallTopographicPlaces(topographicPlaces, bufferedWriter, topographicPlaceMarshaller, lineSeparator);
+                if (event.isEndElement() && SITE_FRAME.equals(event.asEndElement().getName().getLocalPart())) {
+                    // Make sure any open start tag is closed before writing fragments directly to the stream
+                    eventWriter.add(xmlEventFactory.createCharacters(""));
+                    eventWriter.flush();
+                    writer.flush();
+                    marshallTopographicPlaces(topographicPlaces, bufferedOutputStream, event.asEndElement().getName());
                 }
 
-                bufferedWriter.write(publicationDeliveryLine);
-                bufferedWriter.write(lineSeparator);
+                eventWriter.add(event);
             }
+            eventWriter.flush();
         } finally {
-            bufferedWriter.flush();
+            eventReader.close();
+            eventWriter.close();
+            writer.flush();
         }
     }
 
     private void marshallTopographicPlaces(BlockingQueue<org.rutebanken.netex.model.TopographicPlace> topographicPlaceQueue,
-                                                  BufferedWriter bufferedWriter,
-                                                  Marshaller topographicPlaceMarshaller,
-                                                  String lineSeparator) throws InterruptedException, JAXBException, IOException {
+                                                  OutputStream outputStream, QName siteFrameName) throws InterruptedException, JAXBException, IOException {
         logger.info("Marshaling topographic places");
 
+        String topographicPlacesTag = siteFrameName.getPrefix() == null || siteFrameName.getPrefix().isEmpty() ? TOPOGRAPHIC_PLACES : siteFrameName.getPrefix() + ":" + TOPOGRAPHIC_PLACES;
+        Deque<Future<ByteArrayOutputStream>> batchesInFlight = new ArrayDeque<>();
         int count = 0;
-        while (true) {
-            org.rutebanken.netex.model.TopographicPlace topographicPlace = topographicPlaceQueue.take();
 
-            if (topographicPlace.getId().equals("POISON")) {
-                logger.debug("Got poison pill from topographic place queue. Finished marshaling {} topographic places.", count);
-                break;
-            }
+        try {
+            boolean endOfStream = false;
+            while (!endOfStream) {
+                List<TopographicPlace> batch = new ArrayList<>(batchSize);
+                batch.add(topographicPlaceQueue.take());
+                topographicPlaceQueue.drainTo(batch, batchSize - 1);
 
-            if (count == 0) {
-                bufferedWriter.write("<topographicPlaces>");
-                bufferedWriter.write(lineSeparator);
+                int endIndex = indexOfEndOfStream(batch);
+                if (endIndex >= 0) {
+                    endOfStream = true;
+                    batch = batch.subList(0, endIndex);
+                }
+                if (batch.isEmpty()) {
+                    continue;
+                }
+
+                if (count == 0) {
+                    writeString("<" + topographicPlacesTag + ">", outputStream);
+                }
+                count += batch.size();
+
+                batchesInFlight.add(submit(batch));
+                if (batchesInFlight.size() >= maxBatchesInFlight) {
+                    write(batchesInFlight.poll(), outputStream);
+                }
             }
 
-            ++count;
-            logger.debug("Marshalling topographic place {}: {}", count, topographicPlace);
-            JAXBElement<TopographicPlace> jaxBStopPlace = netexObjectFactory.createTopographicPlace(topographicPlace);
-            topographicPlaceMarshaller.marshal(jaxBStopPlace, bufferedWriter);
-            bufferedWriter.write(lineSeparator);
+            while (!batchesInFlight.isEmpty()) {
+                write(batchesInFlight.poll(), outputStream);
+            }
+        } finally {
+            batchesInFlight.forEach(f -> f.cancel(true));
         }
+
         if (count > 0) {
-            bufferedWriter.write("</topographicPlaces>");
-            bufferedWriter.write(lineSeparator);
+            writeString("</" + topographicPlacesTag + ">", outputStream);
+        }
+        logger.debug("Finished marshaling {} topographic places.", count);
+    }
+
+    private int indexOfEndOfStream(List<TopographicPlace> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.get(i) instanceof EndOfStream) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Future<ByteArrayOutputStream> submit(List<TopographicPlace> batch) {
+        if (marshalExecutorService == null) {
+            CompletableFuture<ByteArrayOutputStream> result = new CompletableFuture<>();
+            try {
+                result.complete(marshal(batch));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+            return result;
         }
+        return marshalExecutorService.submit(() -> marshal(batch));
+    }
+
+    private ByteArrayOutputStream marshal(List<TopographicPlace> batch) throws JAXBException {
+        ByteArrayOutputStream buffer = bufferPool.poll();
+        if (buffer == null) {
+            buffer = new ByteArrayOutputStream(batch.size() * 2048);
+        }
+        Marshaller marshaller = topographicPlaceMarshaller.get();
+        for (TopographicPlace topographicPlace : batch) {
+            JAXBElement<TopographicPlace> jaxbTopographicPlace = netexObjectFactory.createTopographicPlace(topographicPlace);
+            marshaller.marshal(jaxbTopographicPlace, buffer);
+            if (formattedOutput) {
+                buffer.write('\n');
+            }
+        }
+        return buffer;
+    }
+
+    private void write(Future<ByteArrayOutputStream> batch, OutputStream outputStream) throws InterruptedException, JAXBException, IOException {
+        ByteArrayOutputStream buffer;
+        try {
+            buffer = batch.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof JAXBException) {
+                throw (JAXBException) e.getCause();
+            }
+            throw new RuntimeException("Failed to marshal topographic places: " + e.getCause().getMessage(), e.getCause());
+        }
+        buffer.writeTo(outputStream);
+        buffer.reset();
+        bufferPool.offer(buffer);
+    }
+
+    private void writeString(String value, OutputStream outputStream) throws IOException {
+        outputStream.write(value.getBytes(StandardCharsets.UTF_8));
+        if (formattedOutput) {
+            outputStream.write('\n');
+        }
+    }
+
+    private static final class EndOfStream extends TopographicPlace {
     }
 }
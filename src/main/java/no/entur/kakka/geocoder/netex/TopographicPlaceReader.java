@@ -21,6 +21,8 @@ import org.rutebanken.netex.model.MultilingualString;
 import org.rutebanken.netex.model.TopographicPlace;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.concurrent.BlockingQueue;
 
 public interface TopographicPlaceReader {
@@ -29,5 +31,15 @@ public interface TopographicPlaceReader {
 
 	MultilingualString getDescription();
 
+	/**
+	 * Add all topographic places to queue, blocking when the queue is full.
+	 */
 	void addToQueue(BlockingQueue<TopographicPlace> queue) throws IOException, InterruptedException;
+
+	/**
+	 * Split into independent readers, ie one per input file, that may add to the same queue concurrently.
+	 */
+	default Collection<TopographicPlaceReader> splitPerInput() {
+		return Collections.singletonList(this);
+	}
 }
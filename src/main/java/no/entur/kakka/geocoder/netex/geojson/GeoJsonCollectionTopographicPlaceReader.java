@@ -28,7 +28,10 @@ import org.rutebanken.netex.model.TopographicPlace;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.concurrent.BlockingQueue;
+import java.util.stream.Collectors;
 
 /**
  * For reading collections of features from geojson files.
@@ -66,6 +69,11 @@ public class GeoJsonCollectionTopographicPlaceReader implements TopographicPlace
         }
     }
 
+    @Override
+    public Collection<TopographicPlaceReader> splitPerInput() {
+        return Arrays.stream(files).map(file -> new GeoJsonCollectionTopographicPlaceReader(wrapperFactory, file)).collect(Collectors.toList());
+    }
+
     @Override
     public String getParticipantRef() {
         return PARTICIPANT_REF;
@@ -0,0 +1,145 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.netex.pbf;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Disk backed store of OSM node locations, for resolving way geometries without keeping nodes on the heap.
+ * <p>
+ * Nodes are appended to a temporary file as (id, lat, lon) entries with coordinates in fixed precision (1e-7 degrees, as in PBF).
+ * PBF files are sorted by node id, so the file is sorted as well and locations are looked up by binary search in a memory mapping
+ * of the file. Nodes must be added in ascending id order and all nodes must be added before the first lookup.
+ */
+public class OsmNodeLocationStore implements Closeable {
+
+	private static final int ENTRY_SIZE = 16;
+
+	// 2^26 entries of 16 bytes per mapped segment, as a single mapping is limited to 2GB
+	private static final int SEGMENT_BITS = 26;
+
+	private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+	private static final double PRECISION = 1e7;
+
+	private final File file;
+
+	private DataOutputStream out;
+
+	private MappedByteBuffer[] segments;
+
+	private long size;
+
+	private long lastId = Long.MIN_VALUE;
+
+	public OsmNodeLocationStore(File directory) {
+		try {
+			file = File.createTempFile("osm-node-locations", ".bin", directory);
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to create OSM node location store: " + e.getMessage(), e);
+		}
+	}
+
+	public void put(long id, double lat, double lon) {
+		if (segments != null) {
+			throw new IllegalStateException("Cannot add OSM node " + id + " after lookups have started");
+		}
+		if (id <= lastId) {
+			throw new IllegalStateException("OSM node " + id + " is not in ascending id order. Single pass reading requires PBF files sorted by id.");
+		}
+		try {
+			out.writeLong(id);
+			out.writeInt((int) Math.round(lat * PRECISION));
+			out.writeInt((int) Math.round(lon * PRECISION));
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to store OSM node location: " + e.getMessage(), e);
+		}
+		lastId = id;
+		size++;
+	}
+
+	/**
+	 * Get location of node as lon/lat coordinate.
+	 *
+	 * @return location or null if node is unknown
+	 */
+	public Coordinate get(long id) {
+		if (segments == null) {
+			map();
+		}
+
+		long low = 0;
+		long high = size - 1;
+		while (low <= high) {
+			long mid = (low + high) >>> 1;
+			MappedByteBuffer segment = segments[(int) (mid >>> SEGMENT_BITS)];
+			int position = (int) (mid & SEGMENT_MASK) * ENTRY_SIZE;
+			long midId = segment.getLong(position);
+			if (midId < id) {
+				low = mid + 1;
+			} else if (midId > id) {
+				high = mid - 1;
+			} else {
+				return new Coordinate(segment.getInt(position + 12) / PRECISION, segment.getInt(position + 8) / PRECISION);
+			}
+		}
+		return null;
+	}
+
+	public long size() {
+		return size;
+	}
+
+	private void map() {
+		try {
+			out.close();
+			try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+				FileChannel channel = randomAccessFile.getChannel();
+				int segmentCount = (int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS);
+				segments = new MappedByteBuffer[segmentCount];
+				for (int i = 0; i < segmentCount; i++) {
+					long start = ((long) i << SEGMENT_BITS) * ENTRY_SIZE;
+					long length = Math.min((SEGMENT_MASK + 1) * ENTRY_SIZE, size * ENTRY_SIZE - start);
+					segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to map OSM node location store: " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (segments == null) {
+			out.close();
+		}
+		segments = null;
+		// Mapped segments are released when garbage collected, the file itself can be deleted right away
+		file.delete();
+	}
+}
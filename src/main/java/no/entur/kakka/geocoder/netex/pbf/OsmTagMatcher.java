@@ -0,0 +1,110 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.netex.pbf;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.util.CollectionUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Matcher for OSM tags against filters on the form "key=valuePrefix" or "keyPrefix", compiled once.
+ * <p>
+ * A tag matches a filter if "key=value" starts with the filter. Filters with a value part are looked up by exact key and
+ * only the value prefixes for the key are checked, so matching a tag does not create any strings.
+ */
+public class OsmTagMatcher {
+
+	private static final char SEPARATOR = '=';
+
+	private final Map<String, String[]> valuePrefixesByKey = new HashMap<>();
+
+	private final String[] keyPrefixes;
+
+	private final AtomicLong matched = new AtomicLong();
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	public OsmTagMatcher(List<String> filters) {
+		Map<String, List<String>> valuePrefixes = new HashMap<>();
+		List<String> keyPrefixList = new ArrayList<>();
+		if (!CollectionUtils.isEmpty(filters)) {
+			for (String rawFilter : filters) {
+				if (StringUtils.isEmpty(rawFilter)) {
+					continue;
+				}
+				String filter = rawFilter.trim();
+				int separator = filter.indexOf(SEPARATOR);
+				if (separator < 0) {
+					keyPrefixList.add(filter);
+				} else {
+					valuePrefixes.computeIfAbsent(filter.substring(0, separator), k -> new ArrayList<>()).add(filter.substring(separator + 1));
+				}
+			}
+		}
+		valuePrefixes.forEach((key, prefixes) -> valuePrefixesByKey.put(key, prefixes.toArray(new String[prefixes.size()])));
+		keyPrefixes = keyPrefixList.toArray(new String[keyPrefixList.size()]);
+	}
+
+	public boolean matches(String key, String value) {
+		String[] valuePrefixes = valuePrefixesByKey.get(key);
+		if (valuePrefixes != null && value != null) {
+			for (String valuePrefix : valuePrefixes) {
+				if (value.startsWith(valuePrefix)) {
+					return true;
+				}
+			}
+		}
+		for (String keyPrefix : keyPrefixes) {
+			if (key.startsWith(keyPrefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Check whether any of the tags of an entity matches, counting matched and rejected entities.
+	 */
+	public boolean matchesAny(Map<String, String> tags) {
+		for (Map.Entry<String, String> tag : tags.entrySet()) {
+			if (matches(tag.getKey(), tag.getValue())) {
+				matched.incrementAndGet();
+				return true;
+			}
+		}
+		rejected.incrementAndGet();
+		return false;
+	}
+
+	public long getMatched() {
+		return matched.get();
+	}
+
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	@Override
+	public String toString() {
+		return "matched=" + getMatched() + ", rejected=" + getRejected();
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.netex.pbf;
+
+import com.google.protobuf.ByteString;
+import crosby.binary.BinaryParser;
+import crosby.binary.Fileformat;
+import crosby.binary.Osmformat;
+import crosby.binary.file.FileBlock;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Parallel replacement for {@link crosby.binary.file.BlockInputStream}.
+ * <p>
+ * The calling thread reads raw blobs from the PBF file and hands them to a pool of workers for inflating and decoding. Decoded blocks
+ * are passed to the parser by the calling thread in file order, so content handlers see the same sequence of entities as when
+ * reading sequentially and need not be thread safe. At most maxBlocksInFlight blocks are read ahead.
+ */
+public class ParallelBlockInputStream {
+
+	private static final String HEADER_TYPE = "OSMHeader";
+
+	private static final String DATA_TYPE = "OSMData";
+
+	private static final int MAX_HEADER_SIZE = 64 * 1024;
+
+	private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+	private final DataInputStream input;
+
+	private final BinaryParser parser;
+
+	private final ExecutorService decoderExecutorService;
+
+	private final int maxBlocksInFlight;
+
+	public ParallelBlockInputStream(InputStream input, BinaryParser parser, ExecutorService decoderExecutorService, int maxBlocksInFlight) {
+		this.input = new DataInputStream(input);
+		this.parser = parser;
+		this.decoderExecutorService = decoderExecutorService;
+		this.maxBlocksInFlight = Math.max(1, maxBlocksInFlight);
+	}
+
+	public void process() throws IOException {
+		Deque<Future<DecodedBlock>> blocksInFlight = new ArrayDeque<>();
+		try {
+			Fileformat.BlobHeader blobHeader;
+			while ((blobHeader = readBlobHeader()) != null) {
+				String type = blobHeader.getType();
+				byte[] blob = readBlob(blobHeader);
+				if (!HEADER_TYPE.equals(type) && !DATA_TYPE.equals(type)) {
+					continue;
+				}
+				blocksInFlight.add(decoderExecutorService.submit(() -> decode(type, blob)));
+
+				if (blocksInFlight.size() >= maxBlocksInFlight) {
+					dispatch(blocksInFlight.poll());
+				}
+			}
+
+			while (!blocksInFlight.isEmpty()) {
+				dispatch(blocksInFlight.poll());
+			}
+			parser.complete();
+		} finally {
+			blocksInFlight.forEach(f -> f.cancel(true));
+		}
+	}
+
+	private Fileformat.BlobHeader readBlobHeader() throws IOException {
+		int headerSize;
+		try {
+			headerSize = input.readInt();
+		} catch (EOFException eof) {
+			return null;
+		}
+		if (headerSize < 0 || headerSize > MAX_HEADER_SIZE) {
+			throw new IOException("Invalid PBF blob header size: " + headerSize);
+		}
+		byte[] header = new byte[headerSize];
+		input.readFully(header);
+		return Fileformat.BlobHeader.parseFrom(header);
+	}
+
+	private byte[] readBlob(Fileformat.BlobHeader blobHeader) throws IOException {
+		int blobSize = blobHeader.getDatasize();
+		if (blobSize < 0 || blobSize > MAX_BLOB_SIZE) {
+			throw new IOException("Invalid PBF blob size: " + blobSize);
+		}
+		byte[] blob = new byte[blobSize];
+		input.readFully(blob);
+		return blob;
+	}
+
+	private void dispatch(Future<DecodedBlock> future) throws IOException {
+		DecodedBlock block;
+		try {
+			block = future.get();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while decoding PBF block", ie);
+		} catch (ExecutionException ee) {
+			throw new IOException("Failed to decode PBF block: " + ee.getCause().getMessage(), ee.getCause());
+		}
+
+		if (block.primitiveBlock != null) {
+			parser.parse(block.primitiveBlock);
+		} else {
+			parser.handleBlock(FileBlock.newInstance(HEADER_TYPE, block.data, null));
+		}
+	}
+
+	private static DecodedBlock decode(String type, byte[] blobBytes) throws IOException, DataFormatException {
+		Fileformat.Blob blob = Fileformat.Blob.parseFrom(blobBytes);
+
+		ByteString data;
+		if (blob.hasRaw()) {
+			data = blob.getRaw();
+		} else if (blob.hasZlibData()) {
+			byte[] inflated = new byte[blob.getRawSize()];
+			Inflater inflater = new Inflater();
+			try {
+				inflater.setInput(blob.getZlibData().toByteArray());
+				inflater.inflate(inflated);
+				if (!inflater.finished()) {
+					throw new DataFormatException("PBF blob was not fully inflated");
+				}
+			} finally {
+				inflater.end();
+			}
+			data = ByteString.copyFrom(inflated);
+		} else {
+			throw new IOException("Unsupported PBF blob compression");
+		}
+
+		if (DATA_TYPE.equals(type)) {
+			return new DecodedBlock(Osmformat.PrimitiveBlock.parseFrom(data), null);
+		}
+		return new DecodedBlock(null, data);
+	}
+
+	private static class DecodedBlock {
+
+		private final Osmformat.PrimitiveBlock primitiveBlock;
+
+		private final ByteString data;
+
+		DecodedBlock(Osmformat.PrimitiveBlock primitiveBlock, ByteString data) {
+			this.primitiveBlock = primitiveBlock;
+			this.data = data;
+		}
+	}
+}
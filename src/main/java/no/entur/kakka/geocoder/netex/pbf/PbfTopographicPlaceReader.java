@@ -19,22 +19,32 @@ package no.entur.kakka.geocoder.netex.pbf;
 import crosby.binary.file.BlockInputStream;
 import no.entur.kakka.geocoder.netex.TopographicPlaceReader;
 import org.opentripplanner.openstreetmap.impl.BinaryOpenStreetMapParser;
-import org.opentripplanner.openstreetmap.services.OpenStreetMapContentHandler;
 import org.rutebanken.netex.model.IanaCountryTldEnumeration;
 import org.rutebanken.netex.model.MultilingualString;
 import org.rutebanken.netex.model.TopographicPlace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 
 /**
  * Map osm pbf places of interest to Netex topographic place.
  */
 public class PbfTopographicPlaceReader implements TopographicPlaceReader {
 
+	private static final Logger logger = LoggerFactory.getLogger(PbfTopographicPlaceReader.class);
+
 	private File[] files;
 
 	private List<String> filter;
@@ -45,12 +55,48 @@ public class PbfTopographicPlaceReader implements TopographicPlaceReader {
 
 	private static final String PARTICIPANT_REF = "OSM";
 
+	private File nodeLocationDirectory;
+
+	private ExecutorService decoderExecutorService;
+
+	private int maxBlocksInFlight;
+
 	public PbfTopographicPlaceReader(List<String> filter, IanaCountryTldEnumeration countryRef, File... files) {
 		this.files = files;
 		this.filter = filter;
 		this.countryRef = countryRef;
 	}
 
+	/**
+	 * Parse each file once, keeping node locations in a store in the given directory instead of parsing twice to collect nodes used in ways.
+	 * Requires PBF files with nodes sorted by id, as files from OSM and Geofabrik are. Files that turn out not to be sorted are read again
+	 * in two passes.
+	 */
+	public PbfTopographicPlaceReader withSinglePass(File nodeLocationDirectory) {
+		this.nodeLocationDirectory = nodeLocationDirectory;
+		return this;
+	}
+
+	/**
+	 * Inflate and decode PBF blocks on the given pool, reading at most maxBlocksInFlight blocks ahead. Blocks are still handled in file order.
+	 */
+	public PbfTopographicPlaceReader withParallelDecoding(ExecutorService decoderExecutorService, int maxBlocksInFlight) {
+		this.decoderExecutorService = decoderExecutorService;
+		this.maxBlocksInFlight = maxBlocksInFlight;
+		return this;
+	}
+
+	@Override
+	public Collection<TopographicPlaceReader> splitPerInput() {
+		return Arrays.stream(files).map(file -> {
+			PbfTopographicPlaceReader reader = new PbfTopographicPlaceReader(filter, countryRef, file);
+			reader.nodeLocationDirectory = nodeLocationDirectory;
+			reader.decoderExecutorService = decoderExecutorService;
+			reader.maxBlocksInFlight = maxBlocksInFlight;
+			return reader;
+		}).collect(Collectors.toList());
+	}
+
 	@Override
 	public String getParticipantRef() {
 		return PARTICIPANT_REF;
@@ -64,18 +110,65 @@ public class PbfTopographicPlaceReader implements TopographicPlaceReader {
 	@Override
 	public void addToQueue(BlockingQueue<TopographicPlace> queue) throws IOException, InterruptedException {
 		for (File file : files) {
-			OpenStreetMapContentHandler contentHandler = new TopographicPlaceOsmContentHandler(queue, filter, PARTICIPANT_REF, countryRef);
+			if (nodeLocationDirectory != null) {
+				addToQueueSinglePass(queue, file);
+			} else {
+				addToQueueTwoPass(queue, file);
+			}
+		}
+	}
+
+	private void addToQueueSinglePass(BlockingQueue<TopographicPlace> queue, File file) throws IOException {
+		// Nodes are added to the queue while parsing, so those already added must be skipped if the file has to be read again
+		Set<Long> enqueuedNodeIds = new HashSet<>();
+		try (OsmNodeLocationStore nodeLocationStore = new OsmNodeLocationStore(nodeLocationDirectory)) {
+			TopographicPlaceOsmContentHandler contentHandler = new TopographicPlaceOsmContentHandler(queue, filter, PARTICIPANT_REF, countryRef, nodeLocationStore)
+					                                                   .withEnqueuedNodeIds(enqueuedNodeIds);
 			BinaryOpenStreetMapParser parser = new BinaryOpenStreetMapParser(contentHandler);
 			parser.setParseRelations(false);
+			parser.setParseNodes(true);
 
-			// Parse ways to collect nodes first
-			parser.setParseNodes(false);
-			new BlockInputStream(new FileInputStream(file), parser).process();
-			contentHandler.doneSecondPhaseWays();
+			try {
+				process(file, parser);
+				contentHandler.resolveWays();
+				logger.info("Read places of interest from OSM file: " + file.getName() + ". Entities with name by tag filter: " + contentHandler.getTagMatcher());
+				return;
+			} catch (IllegalStateException e) {
+				// Thrown by the node location store for files not sorted by id, before any ways have been added to the queue
+				logger.warn("Unable to read OSM file: " + file.getName() + " in a single pass, reading it in two passes instead: " + e.getMessage());
+			}
+		}
+		addToQueueTwoPass(queue, file, enqueuedNodeIds);
+	}
 
-			// Parse nodes and ways
-			parser.setParseNodes(true);
-			new BlockInputStream(new FileInputStream(file), parser).process();
+	private void addToQueueTwoPass(BlockingQueue<TopographicPlace> queue, File file) throws IOException {
+		addToQueueTwoPass(queue, file, null);
+	}
+
+	private void addToQueueTwoPass(BlockingQueue<TopographicPlace> queue, File file, Set<Long> enqueuedNodeIds) throws IOException {
+		TopographicPlaceOsmContentHandler contentHandler = new TopographicPlaceOsmContentHandler(queue, filter, PARTICIPANT_REF, countryRef)
+				                                                   .withEnqueuedNodeIds(enqueuedNodeIds);
+		BinaryOpenStreetMapParser parser = new BinaryOpenStreetMapParser(contentHandler);
+		parser.setParseRelations(false);
+
+		// Parse ways to collect nodes first
+		parser.setParseNodes(false);
+		process(file, parser);
+		contentHandler.doneSecondPhaseWays();
+
+		// Parse nodes and ways
+		parser.setParseNodes(true);
+		process(file, parser);
+		logger.info("Read places of interest from OSM file: " + file.getName() + ". Entities with name by tag filter (ways counted for both passes): " + contentHandler.getTagMatcher());
+	}
+
+	private void process(File file, BinaryOpenStreetMapParser parser) throws IOException {
+		try (InputStream inputStream = new FileInputStream(file)) {
+			if (decoderExecutorService != null) {
+				new ParallelBlockInputStream(inputStream, parser, decoderExecutorService, maxBlocksInFlight).process();
+			} else {
+				new BlockInputStream(inputStream, parser).process();
+			}
 		}
 	}
 }
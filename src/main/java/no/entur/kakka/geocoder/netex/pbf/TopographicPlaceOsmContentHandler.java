@@ -23,7 +23,6 @@ import com.vividsolutions.jts.geom.Polygon;
 import net.opengis.gml._3.PolygonType;
 import no.entur.kakka.geocoder.netex.NetexGeoUtil;
 import no.entur.kakka.geocoder.netex.TopographicPlaceNetexWriter;
-import org.apache.commons.lang3.StringUtils;
 import org.opentripplanner.openstreetmap.model.OSMNode;
 import org.opentripplanner.openstreetmap.model.OSMRelation;
 import org.opentripplanner.openstreetmap.model.OSMWay;
@@ -32,7 +31,6 @@ import org.opentripplanner.openstreetmap.services.OpenStreetMapContentHandler;
 import org.rutebanken.netex.model.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.util.CollectionUtils;
 
 import java.math.BigDecimal;
 import java.util.*;
@@ -42,15 +40,17 @@ import java.util.stream.Collectors;
 /**
  * Map OSM nodes and ways to Netex topographic place.
  * <p>
- * Ways refer to nodes for coordinates. Because of this files must be parsed twice,
- * first to collect nodes ids referred by relevant ways and then to map relevant nodes and ways.
+ * Ways refer to nodes for coordinates. Because of this files must either be parsed twice,
+ * first to collect nodes ids referred by relevant ways and then to map relevant nodes and ways,
+ * or parsed once with the locations of all nodes kept in a {@link OsmNodeLocationStore} and relevant ways
+ * resolved when the whole file has been parsed.
  */
 public class TopographicPlaceOsmContentHandler implements OpenStreetMapContentHandler {
 	private static final Logger logger = LoggerFactory.getLogger(TopographicPlaceNetexWriter.class);
 
 	private BlockingQueue<TopographicPlace> topographicPlaceQueue;
 
-	private List<String> tagFilters;
+	private OsmTagMatcher tagMatcher;
 
 	private String participantRef;
 
@@ -64,29 +64,50 @@ public class TopographicPlaceOsmContentHandler implements OpenStreetMapContentHa
 
 	private boolean gatherNodesUsedInWaysPhase = true;
 
+	private OsmNodeLocationStore nodeLocationStore;
+
+	private List<OSMWay> unresolvedWays = new ArrayList<>();
+
+	private Set<Long> enqueuedNodeIds;
+
 	public TopographicPlaceOsmContentHandler(BlockingQueue<TopographicPlace> topographicPlaceQueue,
 			                                        List<String> tagFilters, String participantRef, IanaCountryTldEnumeration countryRef) {
 		this.topographicPlaceQueue = topographicPlaceQueue;
-		this.tagFilters = cleanFilter(tagFilters);
+		this.tagMatcher = new OsmTagMatcher(tagFilters);
 		this.participantRef = participantRef;
 		this.countryRef = countryRef;
 	}
 
-	private List<String> cleanFilter(List<String> rawFilter) {
-		if (CollectionUtils.isEmpty(rawFilter)) {
-			return new ArrayList<>();
-		}
-		return rawFilter.stream().filter(f -> !StringUtils.isEmpty(f)).map(String::trim).collect(Collectors.toList());
+	/**
+	 * Create handler for parsing file once, with node locations kept in store.
+	 */
+	public TopographicPlaceOsmContentHandler(BlockingQueue<TopographicPlace> topographicPlaceQueue,
+			                                        List<String> tagFilters, String participantRef, IanaCountryTldEnumeration countryRef,
+			                                        OsmNodeLocationStore nodeLocationStore) {
+		this(topographicPlaceQueue, tagFilters, participantRef, countryRef);
+		this.nodeLocationStore = nodeLocationStore;
+		this.gatherNodesUsedInWaysPhase = false;
+	}
+
+	/**
+	 * Record the ids of nodes added to the queue in the given set, and skip nodes already in it. Lets a file be read again
+	 * after a failed single pass without adding the same places twice.
+	 */
+	public TopographicPlaceOsmContentHandler withEnqueuedNodeIds(Set<Long> enqueuedNodeIds) {
+		this.enqueuedNodeIds = enqueuedNodeIds;
+		return this;
 	}
 
 	@Override
 	public void addNode(OSMNode osmNode) {
-		if (matchesFilter(osmNode)) {
+		if (matchesFilter(osmNode) && (enqueuedNodeIds == null || enqueuedNodeIds.add(osmNode.getId()))) {
 			TopographicPlace topographicPlace = map(osmNode).withCentroid(toCentroid(osmNode.lat, osmNode.lon));
-			topographicPlaceQueue.add(topographicPlace);
+			enqueue(topographicPlace);
 		}
 
-		if (nodeRefsUsedInWays.contains(osmNode.getId())) {
+		if (nodeLocationStore != null) {
+			nodeLocationStore.put(osmNode.getId(), osmNode.lat, osmNode.lon);
+		} else if (nodeRefsUsedInWays.contains(osmNode.getId())) {
 			nodes.put(osmNode.getId(), osmNode);
 		}
 	}
@@ -95,23 +116,38 @@ public class TopographicPlaceOsmContentHandler implements OpenStreetMapContentHa
 	public void addWay(OSMWay osmWay) {
 		if (matchesFilter(osmWay)) {
 
-			if (gatherNodesUsedInWaysPhase) {
+			if (nodeLocationStore != null) {
+				unresolvedWays.add(osmWay);
+			} else if (gatherNodesUsedInWaysPhase) {
 				nodeRefsUsedInWays.addAll(osmWay.getNodeRefs());
 			} else {
 				TopographicPlace topographicPlace = map(osmWay);
 				if (addGeometry(osmWay, topographicPlace)) {
-					topographicPlaceQueue.add(topographicPlace);
+					enqueue(topographicPlace);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Map ways collected when parsing file once, with geometries from the node location store.
+	 */
+	public void resolveWays() {
+		for (OSMWay osmWay : unresolvedWays) {
+			TopographicPlace topographicPlace = map(osmWay);
+			if (addGeometry(osmWay, topographicPlace)) {
+				enqueue(topographicPlace);
+			}
+		}
+		unresolvedWays.clear();
+	}
+
 	private boolean addGeometry(OSMWay osmWay, TopographicPlace topographicPlace) {
 		List<Coordinate> coordinates = new ArrayList<>();
 		for (Long nodeRef : osmWay.getNodeRefs()) {
-			OSMNode node = nodes.get(nodeRef);
-			if (node != null) {
-				coordinates.add(new Coordinate(node.lon, node.lat));
+			Coordinate coordinate = getLocation(nodeRef);
+			if (coordinate != null) {
+				coordinates.add(coordinate);
 			}
 		}
 
@@ -128,6 +164,23 @@ public class TopographicPlaceOsmContentHandler implements OpenStreetMapContentHa
 		return true;
 	}
 
+	private Coordinate getLocation(Long nodeRef) {
+		if (nodeLocationStore != null) {
+			return nodeLocationStore.get(nodeRef);
+		}
+		OSMNode node = nodes.get(nodeRef);
+		return node == null ? null : new Coordinate(node.lon, node.lat);
+	}
+
+	private void enqueue(TopographicPlace topographicPlace) {
+		try {
+			topographicPlaceQueue.put(topographicPlace);
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while adding topographic place to queue", ie);
+		}
+	}
+
 	@Override
 	public void doneSecondPhaseWays() {
 		gatherNodesUsedInWaysPhase = false;
@@ -138,12 +191,11 @@ public class TopographicPlaceOsmContentHandler implements OpenStreetMapContentHa
 			return false;
 		}
 
-		for (Map.Entry<String, String> tag : entity.getTags().entrySet()) {
-			if (tagFilters.stream().anyMatch(f -> (tag.getKey() + "=" + tag.getValue()).startsWith(f))) {
-				return true;
-			}
-		}
-		return false;
+		return tagMatcher.matchesAny(entity.getTags());
+	}
+
+	public OsmTagMatcher getTagMatcher() {
+		return tagMatcher;
 	}
 
 	TopographicPlace map(OSMWithTags entity) {
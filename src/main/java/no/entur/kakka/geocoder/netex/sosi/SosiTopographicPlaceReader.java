@@ -17,25 +17,37 @@
 package no.entur.kakka.geocoder.netex.sosi;
 
 
+import no.entur.kakka.geocoder.netex.TopographicPlaceAdapter;
 import no.entur.kakka.geocoder.netex.TopographicPlaceMapper;
 import no.entur.kakka.geocoder.netex.TopographicPlaceReader;
 import no.entur.kakka.geocoder.sosi.SosiElementWrapperFactory;
 import no.entur.kakka.geocoder.sosi.SosiTopographicPlaceAdapterReader;
+import no.entur.kakka.routes.file.ZipEntryIterator;
 import org.rutebanken.netex.model.MultilingualString;
 import org.rutebanken.netex.model.TopographicPlace;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class SosiTopographicPlaceReader implements TopographicPlaceReader {
     private static final String LANGUAGE = "en";
 
     private static final String PARTICIPANT_REF = "KVE";
+    private static final String SOSI_FILE_EXTENSION = "sos";
+
     private Collection<File> sosiFiles;
 
+    private Collection<Supplier<InputStream>> zipArchives = Collections.emptyList();
+
     private SosiElementWrapperFactory wrapperFactory;
 
     public SosiTopographicPlaceReader(SosiElementWrapperFactory wrapperFactory, Collection<File> sosiFiles) {
@@ -43,12 +55,42 @@ public class SosiTopographicPlaceReader implements TopographicPlaceReader {
         this.wrapperFactory = wrapperFactory;
     }
 
+    /**
+     * Read SOSI entries directly from zip archives, without extracting them to disk. Each archive is opened when it is read.
+     */
+    public static SosiTopographicPlaceReader fromZipArchives(SosiElementWrapperFactory wrapperFactory, Collection<Supplier<InputStream>> zipArchives) {
+        SosiTopographicPlaceReader reader = new SosiTopographicPlaceReader(wrapperFactory, Collections.emptyList());
+        reader.zipArchives = zipArchives;
+        return reader;
+    }
+
     public void addToQueue(BlockingQueue<TopographicPlace> queue) throws IOException, InterruptedException {
         for (File file : sosiFiles) {
-            new SosiTopographicPlaceAdapterReader(wrapperFactory, new FileInputStream(file)).read().forEach(a -> queue.add(new TopographicPlaceMapper(a, getParticipantRef()).toTopographicPlace()));
+            addToQueue(queue, new FileInputStream(file));
+        }
+        for (Supplier<InputStream> zipArchive : zipArchives) {
+            try (ZipEntryIterator entries = new ZipEntryIterator(zipArchive.get(), SOSI_FILE_EXTENSION)) {
+                ZipEntryIterator.Entry entry;
+                while ((entry = entries.nextEntry()) != null) {
+                    addToQueue(queue, entry.getInputStream());
+                }
+            }
         }
     }
 
+    private void addToQueue(BlockingQueue<TopographicPlace> queue, InputStream sosiInputStream) throws InterruptedException {
+        for (TopographicPlaceAdapter adapter : new SosiTopographicPlaceAdapterReader(wrapperFactory, sosiInputStream).read()) {
+            queue.put(new TopographicPlaceMapper(adapter, getParticipantRef()).toTopographicPlace());
+        }
+    }
+
+    @Override
+    public Collection<TopographicPlaceReader> splitPerInput() {
+        List<TopographicPlaceReader> readers = sosiFiles.stream().map(file -> new SosiTopographicPlaceReader(wrapperFactory, Collections.singletonList(file))).collect(Collectors.toCollection(ArrayList::new));
+        zipArchives.forEach(zipArchive -> readers.add(fromZipArchives(wrapperFactory, Collections.singletonList(zipArchive))));
+        return readers;
+    }
+
 
     @Override
     public String getParticipantRef() {
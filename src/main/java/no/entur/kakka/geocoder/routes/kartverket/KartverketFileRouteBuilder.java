@@ -18,6 +18,7 @@ package no.entur.kakka.geocoder.routes.kartverket;
 
 import no.entur.kakka.Constants;
 import no.entur.kakka.domain.BlobStoreFiles;
+import no.entur.kakka.domain.DownloadedFile;
 import no.entur.kakka.domain.FileNameAndDigest;
 import no.entur.kakka.geocoder.BaseRouteBuilder;
 import no.entur.kakka.geocoder.routes.util.MarkContentChangedAggregationStrategy;
@@ -25,12 +26,9 @@ import no.entur.kakka.services.BlobStoreService;
 import org.apache.camel.Exchange;
 import org.apache.camel.LoggingLevel;
 import org.apache.camel.spi.IdempotentRepository;
-import org.apache.commons.codec.digest.DigestUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
-import java.io.File;
-import java.io.InputStream;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Set;
@@ -72,8 +70,10 @@ public class KartverketFileRouteBuilder extends BaseRouteBuilder {
 		from("direct:kartverketUploadFileIfUpdated")
 				.setHeader(Exchange.FILE_NAME, simple(("${body.name}")))
 				.setHeader(Constants.FILE_HANDLE, simple("${header." + Constants.FOLDER_NAME + "}/${body.name}"))
+				// Digest was computed while downloading
 				.process(e -> e.getIn().setHeader("file_NameAndDigest", new FileNameAndDigest(e.getIn().getHeader(Constants.FILE_HANDLE, String.class),
-						                                                                             DigestUtils.md5Hex(e.getIn().getBody(InputStream.class)))))
+						                                                                             e.getIn().getBody(DownloadedFile.class).getDigest())))
+				.setBody(simple("${body.file}"))
 				.idempotentConsumer(header("file_NameAndDigest")).messageIdRepository(idempotentDownloadRepository)
 				.log(LoggingLevel.INFO, "Uploading ${header." + Constants.FILE_HANDLE + "}")
 				.to("direct:uploadBlob")
@@ -83,7 +83,7 @@ public class KartverketFileRouteBuilder extends BaseRouteBuilder {
 	}
 
 	private void deleteNoLongerActiveFiles(Exchange e) {
-		List<File> activeFiles = e.getIn().getBody(List.class);
+		List<DownloadedFile> activeFiles = e.getIn().getBody(List.class);
 		Set<String> activeFileNames = activeFiles.stream().map(f -> f.getName()).collect(Collectors.toSet());
 		BlobStoreFiles blobs = blobStoreService.listBlobsInFolder(e.getIn().getHeader(Constants.FOLDER_NAME, String.class), e);
 
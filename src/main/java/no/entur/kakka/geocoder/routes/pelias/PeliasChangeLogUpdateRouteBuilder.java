@@ -0,0 +1,147 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.routes.pelias;
+
+import com.google.common.collect.Lists;
+import no.entur.kakka.geocoder.BaseRouteBuilder;
+import no.entur.kakka.geocoder.GeoCoderConstants;
+import no.entur.kakka.geocoder.routes.pelias.elasticsearch.ElasticsearchBulkResponseHandler;
+import no.entur.kakka.geocoder.routes.pelias.elasticsearch.ElasticsearchBulkStatistics;
+import no.entur.kakka.geocoder.routes.pelias.elasticsearch.ElasticsearchCommand;
+import no.entur.kakka.geocoder.routes.pelias.mapper.netex.DeliveryPublicationStreamToElasticsearchCommands;
+import no.entur.kakka.geocoder.services.AdminUnitRepository;
+import no.entur.kakka.geocoder.services.AdminUnitRepositoryBuilder;
+import org.apache.camel.Exchange;
+import org.apache.camel.LoggingLevel;
+import org.apache.camel.http.common.HttpOperationFailedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static no.entur.kakka.Constants.FILE_HANDLE;
+import static org.apache.camel.builder.Builder.exceptionStackTrace;
+
+/**
+ * Incremental update of the live Pelias index from Tiamat change log exports.
+ * <p>
+ * Changed stop places are indexed and documents for stop places that are no longer valid are deleted, so that stop place edits are
+ * searchable without waiting for the next full rebuild of the index.
+ */
+@Component
+public class PeliasChangeLogUpdateRouteBuilder extends BaseRouteBuilder {
+
+    @Value("${elasticsearch.live.url:http4://es:9200}")
+    private String elasticsearchLiveUrl;
+
+    @Value("${pelias.insert.batch.size:10000}")
+    private int insertBatchSize;
+
+    @Value("${pelias.insert.bulk.retry.max:10}")
+    private int bulkRetryMax;
+
+    @Value("${pelias.insert.bulk.retry.delay:1000}")
+    private long bulkRetryDelay;
+
+    @Value("${pelias.change.log.max.documents.per.stop.place:10}")
+    private int maxDocumentsPerStopPlace;
+
+    // Admin units change rarely, avoid rebuilding the repository for every change log
+    @Value("${pelias.change.log.admin.units.max.age:86400000}")
+    private long adminUnitsMaxAge;
+
+    @Autowired
+    private DeliveryPublicationStreamToElasticsearchCommands deliveryPublicationStreamToElasticsearchCommands;
+
+    @Autowired
+    private AdminUnitRepositoryBuilder adminUnitRepositoryBuilder;
+
+    private AdminUnitRepository adminUnitRepository;
+
+    private long adminUnitRepositoryCreated;
+
+    @Override
+    public void configure() throws Exception {
+        super.configure();
+
+        onException(HttpOperationFailedException.class)
+                .onWhen(e -> e.getException(HttpOperationFailedException.class).getStatusCode() == 429)
+                .maximumRedeliveries(bulkRetryMax)
+                .redeliveryDelay(bulkRetryDelay)
+                .useExponentialBackOff()
+                .backOffMultiplier(2)
+                .retryAttemptedLogLevel(LoggingLevel.WARN);
+
+        from("direct:updatePeliasFromTiamatChangeLog")
+                .log(LoggingLevel.INFO, "Updating live pelias index from Tiamat change log: ${header." + FILE_HANDLE + "}")
+                .doTry()
+                .to("direct:getBlob")
+                .process(e -> e.getIn().setBody(toChangeCommands(e.getIn().getBody(InputStream.class))))
+                .process(e -> e.setProperty(GeoCoderConstants.GEOCODER_ADMIN_UNIT_REPO, getAdminUnitRepository()))
+                .process(e -> e.setProperty(GeoCoderConstants.GEOCODER_BULK_STATISTICS, new ElasticsearchBulkStatistics()))
+                .bean("peliasIndexValidCommandFilter")
+                .bean("peliasIndexParentInfoEnricher")
+                .split().exchange(e -> Lists.partition(e.getIn().getBody(List.class), insertBatchSize)).stopOnException()
+                .to("direct:sendPeliasChangeLogBulkRequest")
+                .end()
+                .log(LoggingLevel.INFO, "Finished updating live pelias index from Tiamat change log: ${header." + FILE_HANDLE + "}: ${exchangeProperty." + GeoCoderConstants.GEOCODER_BULK_STATISTICS + "}")
+                .doCatch(Exception.class)
+                // Change log is included in next full rebuild of the index, do not fail the export
+                .log(LoggingLevel.ERROR, "Failed to update live pelias index from Tiamat change log ${header." + FILE_HANDLE + "}: " + exceptionMessage() + " stacktrace: " + exceptionStackTrace())
+                .end()
+                .routeId("pelias-update-from-tiamat-change-log");
+
+        from("direct:sendPeliasChangeLogBulkRequest")
+                .setHeader(Exchange.HTTP_METHOD, constant(org.apache.camel.component.http4.HttpMethods.POST))
+                .setHeader(Exchange.CONTENT_TYPE, constant("application/json; charset=utf-8"))
+                .setProperty(ElasticsearchBulkResponseHandler.BULK_ATTEMPT, constant(0))
+                .loopDoWhile(body().isNotNull())
+                .setProperty(ElasticsearchBulkResponseHandler.BULK_COMMANDS, body())
+                .bean("elasticsearchCommandWriterService", "toBulkRequestEntity")
+                .toD(elasticsearchLiveUrl + "/_bulk")
+                .bean("elasticsearchBulkResponseHandler", "handleResponse")
+                .end()
+                .routeId("pelias-send-change-log-bulk-request");
+    }
+
+    private List<ElasticsearchCommand> toChangeCommands(InputStream changeLogZip) throws IOException {
+        List<ElasticsearchCommand> commands = new ArrayList<>();
+        try (ZipInputStream zipInputStream = new ZipInputStream(changeLogZip)) {
+            ZipEntry entry;
+            while ((entry = zipInputStream.getNextEntry()) != null) {
+                if (!entry.isDirectory() && entry.getName().endsWith(".xml")) {
+                    commands.addAll(deliveryPublicationStreamToElasticsearchCommands.transformChanges(zipInputStream, maxDocumentsPerStopPlace));
+                }
+            }
+        }
+        return commands;
+    }
+
+    private synchronized AdminUnitRepository getAdminUnitRepository() {
+        if (adminUnitRepository == null || System.currentTimeMillis() - adminUnitRepositoryCreated > adminUnitsMaxAge) {
+            adminUnitRepository = adminUnitRepositoryBuilder.build();
+            adminUnitRepositoryCreated = System.currentTimeMillis();
+        }
+        return adminUnitRepository;
+    }
+}
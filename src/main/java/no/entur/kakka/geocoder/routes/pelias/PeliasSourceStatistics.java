@@ -0,0 +1,120 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.routes.pelias;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wall time, files, bytes read and documents indexed for one source of the Pelias index build, shared by all files for the source.
+ */
+public class PeliasSourceStatistics {
+
+	private final String source;
+
+	private final long startTime = System.currentTimeMillis();
+
+	private volatile long endTime;
+
+	private final AtomicLong files = new AtomicLong();
+
+	private final AtomicLong bytes = new AtomicLong();
+
+	private final AtomicLong documents = new AtomicLong();
+
+	public PeliasSourceStatistics(String source) {
+		this.source = source;
+	}
+
+	/**
+	 * Wrap stream to count bytes read from it for this source.
+	 */
+	public InputStream countBytes(InputStream in) {
+		files.incrementAndGet();
+		return new ByteCountingInputStream(in, bytes);
+	}
+
+	public void addDocuments(long count) {
+		documents.addAndGet(count);
+	}
+
+	public void stop() {
+		endTime = System.currentTimeMillis();
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public long getWallTimeMillis() {
+		return (endTime > 0 ? endTime : System.currentTimeMillis()) - startTime;
+	}
+
+	public long getFiles() {
+		return files.get();
+	}
+
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	public long getDocuments() {
+		return documents.get();
+	}
+
+	@Override
+	public String toString() {
+		return "source=" + source + ", wallTimeMillis=" + getWallTimeMillis() + ", files=" + getFiles() + ", bytes=" + getBytes() + ", documents=" + getDocuments();
+	}
+
+	private static class ByteCountingInputStream extends FilterInputStream {
+
+		private final AtomicLong counter;
+
+		ByteCountingInputStream(InputStream in, AtomicLong counter) {
+			super(in);
+			this.counter = counter;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				counter.incrementAndGet();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				counter.addAndGet(n);
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			counter.addAndGet(skipped);
+			return skipped;
+		}
+	}
+}
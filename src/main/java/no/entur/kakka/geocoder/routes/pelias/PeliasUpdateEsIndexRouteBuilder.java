@@ -21,32 +21,35 @@ import no.entur.kakka.Constants;
 import no.entur.kakka.exceptions.KakkaException;
 import no.entur.kakka.geocoder.BaseRouteBuilder;
 import no.entur.kakka.geocoder.GeoCoderConstants;
+import no.entur.kakka.geocoder.routes.pelias.elasticsearch.ElasticsearchBulkResponseHandler;
+import no.entur.kakka.geocoder.routes.pelias.elasticsearch.ElasticsearchBulkStatistics;
+import no.entur.kakka.geocoder.routes.pelias.mapper.kartverket.KartverketSosiStreamToElasticsearchCommands;
 import no.entur.kakka.geocoder.routes.util.AbortRouteException;
 import no.entur.kakka.geocoder.routes.util.MarkContentChangedAggregationStrategy;
-import no.entur.kakka.geocoder.sosi.SosiFileFilter;
-import no.entur.kakka.routes.file.ZipFileUtils;
+import no.entur.kakka.geocoder.services.AdminUnitRepository;
+import no.entur.kakka.routes.file.ZipEntryIterator;
 import org.apache.camel.Exchange;
 import org.apache.camel.LoggingLevel;
+import org.apache.camel.ThreadPoolRejectedPolicy;
+import org.apache.camel.builder.ThreadPoolProfileBuilder;
 import org.apache.camel.component.http4.HttpMethods;
 import org.apache.camel.http.common.HttpOperationFailedException;
 import org.apache.camel.processor.aggregate.UseOriginalAggregationStrategy;
 import org.apache.camel.processor.validation.PredicateValidationException;
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
 import java.io.File;
 import java.io.InputStream;
-import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
 
 import static no.entur.kakka.Constants.CONTENT_CHANGED;
 import static no.entur.kakka.Constants.FILE_HANDLE;
 import static org.apache.camel.builder.Builder.exceptionStackTrace;
-import static org.apache.commons.io.FileUtils.deleteDirectory;
 
 //@Component
 public class PeliasUpdateEsIndexRouteBuilder extends BaseRouteBuilder {
@@ -67,6 +70,21 @@ public class PeliasUpdateEsIndexRouteBuilder extends BaseRouteBuilder {
     @Value("${pelias.insert.batch.size:10000}")
     private int insertBatchSize;
 
+    @Value("${pelias.insert.bulk.max.in.flight:4}")
+    private int bulkMaxInFlight;
+
+    @Value("${pelias.insert.bulk.queue.size:4}")
+    private int bulkQueueSize;
+
+    @Value("${pelias.insert.bulk.retry.max:10}")
+    private int bulkRetryMax;
+
+    @Value("${pelias.insert.bulk.retry.delay:1000}")
+    private long bulkRetryDelay;
+
+    @Value("${pelias.insert.file.workers:8}")
+    private int fileWorkers;
+
     @Value("#{'${geocoder.place.type.whitelist:tettsted,tettsteddel,tettbebyggelse,bygdelagBygd,grend,boligfelt,industriområde,bydel}'.split(',')}")
     private List<String> placeTypeWhiteList;
 
@@ -74,16 +92,38 @@ public class PeliasUpdateEsIndexRouteBuilder extends BaseRouteBuilder {
     private PeliasUpdateStatusService updateStatusService;
 
     @Autowired
-    private SosiFileFilter sosiFileFilter;
+    private KartverketSosiStreamToElasticsearchCommands kartverketSosiStreamToElasticsearchCommands;
 
     private static final String FILE_EXTENSION = "RutebankenFileExtension";
     private static final String CONVERSION_ROUTE = "RutebankenConversionRoute";
     private static final String WORKING_DIRECTORY = "RutebankenWorkingDirectory";
+    private static final String ENTRY_NAME = "RutebankenEntryName";
+    private static final String SOURCE_ROUTE = "RutebankenSourceRoute";
 
     @Override
     public void configure() throws Exception {
         super.configure();
 
+        // Elasticsearch rejects bulk requests with 429 when its queues are full. Back off and retry the request.
+        onException(HttpOperationFailedException.class)
+                .onWhen(e -> e.getException(HttpOperationFailedException.class).getStatusCode() == 429)
+                .maximumRedeliveries(bulkRetryMax)
+                .redeliveryDelay(bulkRetryDelay)
+                .useExponentialBackOff()
+                .backOffMultiplier(2)
+                .retryAttemptedLogLevel(LoggingLevel.WARN);
+
+        // Bounded pool for sending bulk requests. Producers run rejected batches themselves when the queue is full, to apply backpressure.
+        ExecutorService bulkExecutorService = getContext().getExecutorServiceManager().newThreadPool(this, "PeliasBulkIndexer",
+                new ThreadPoolProfileBuilder("pelias-bulk-indexer").poolSize(bulkMaxInFlight).maxPoolSize(bulkMaxInFlight)
+                        .maxQueueSize(bulkQueueSize).rejectedPolicy(ThreadPoolRejectedPolicy.CallerRuns).build());
+
+        // Pool shared by sources and files. Without a queue, tasks are handed to an idle worker or run by the caller,
+        // so nested splits on the same pool never wait for a queued task and the total number of busy threads stays bounded.
+        ExecutorService fileExecutorService = getContext().getExecutorServiceManager().newThreadPool(this, "PeliasFileIndexer",
+                new ThreadPoolProfileBuilder("pelias-file-indexer").poolSize(fileWorkers).maxPoolSize(fileWorkers)
+                        .maxQueueSize(0).rejectedPolicy(ThreadPoolRejectedPolicy.CallerRuns).build());
+
         from("direct:insertElasticsearchIndexData")
                 .bean(updateStatusService, "setBuilding")
                 .setHeader(CONTENT_CHANGED, constant(false))
@@ -95,13 +135,14 @@ public class PeliasUpdateEsIndexRouteBuilder extends BaseRouteBuilder {
                 .setProperty(GeoCoderConstants.GEOCODER_ADMIN_UNIT_REPO, simple("body"))
                 .doTry()
                 .multicast(new UseOriginalAggregationStrategy())
-                .parallelProcessing()
+                .parallelProcessing().executorService(fileExecutorService)
                 .stopOnException()
                 .to("direct:insertAdministrativeUnits", "direct:insertAddresses", "direct:insertPlaceNames", "direct:insertTiamatData")
                 .end()
                 .endDoTry()
                 .doCatch(AbortRouteException.class)
                 .doFinally()
+                .log(LoggingLevel.INFO, "Reverse geocoding of localities: ${exchangeProperty." + GeoCoderConstants.GEOCODER_ADMIN_UNIT_REPO + ".lookupStatistics}")
                 .setHeader(Exchange.FILE_PARENT, constant(localWorkingDirectory))
                 .to("direct:cleanUpLocalDirectory")
                 .end()
@@ -171,20 +212,26 @@ public class PeliasUpdateEsIndexRouteBuilder extends BaseRouteBuilder {
                 .log(LoggingLevel.DEBUG, "Finished inserting place names to ES")
                 .routeId("pelias-insert-place-names");
 
+        // Admin units have already been read to build the admin unit repository, index those instead of reading the blobs again
         from("direct:insertAdministrativeUnits")
                 .log(LoggingLevel.DEBUG, "Start inserting administrative units to ES")
                 .setHeader(Exchange.FILE_PARENT, simple(blobStoreSubdirectoryForKartverket + "/administrativeUnits"))
                 .setHeader(WORKING_DIRECTORY, simple(localWorkingDirectory + "/adminUnits"))
-                .setHeader(CONVERSION_ROUTE, constant("direct:convertToPeliasCommandsFromKartverketSOSI"))
-                .setHeader(FILE_EXTENSION, constant("sos"))
+                .setHeader(SOURCE_ROUTE, constant("direct:insertToPeliasFromAdminUnitRepository"))
                 .to("direct:haltIfContentIsMissing")
                 .log(LoggingLevel.DEBUG, "Finished inserting administrative units to ES")
                 .routeId("pelias-insert-admin-units");
 
 
         from("direct:haltIfContentIsMissing")
+                .process(e -> e.setProperty(GeoCoderConstants.GEOCODER_SOURCE_STATISTICS, new PeliasSourceStatistics(e.getIn().getHeader(Exchange.FILE_PARENT, String.class))))
                 .doTry()
+                .choice()
+                .when(header(SOURCE_ROUTE).isNotNull())
+                .toD("${header." + SOURCE_ROUTE + "}")
+                .otherwise()
                 .to("direct:insertToPeliasFromFilesInFolder")
+                .end()
                 .choice()
                 .when(e -> updateStatusService.getStatus() != PeliasUpdateStatusService.Status.ABORT)
                 .validate(header(Constants.CONTENT_CHANGED).isEqualTo(Boolean.TRUE))
@@ -194,74 +241,109 @@ public class PeliasUpdateEsIndexRouteBuilder extends BaseRouteBuilder {
                 .doCatch(PredicateValidationException.class, KakkaException.class)
                 .bean(updateStatusService, "signalAbort")
                 .log(LoggingLevel.ERROR, "Elasticsearch scratch index build failed for ${header." + WORKING_DIRECTORY + "}: " + exceptionMessage() + " stacktrace: " + exceptionStackTrace())
+                .doFinally()
+                .process(e -> getSourceStatistics(e).stop())
+                .log(LoggingLevel.INFO, "Finished source in elasticsearch scratch index build: ${exchangeProperty." + GeoCoderConstants.GEOCODER_SOURCE_STATISTICS + "}")
                 .end()
                 .routeId("pelias-insert-halt-if-content-missing");
 
         from("direct:insertToPeliasFromFilesInFolder")
                 .bean("blobStoreService", "listBlobsInFolder")
-                .split(simple("${body.files}")).stopOnException()
+                .split(simple("${body.files}")).parallelProcessing().executorService(fileExecutorService).stopOnException()
                 .aggregationStrategy(new MarkContentChangedAggregationStrategy())
                 .to("direct:haltIfAborted")
                 .setHeader(FILE_HANDLE, simple("${body.name}"))
                 .to("direct:getBlob")
+                .process(e -> e.getIn().setBody(getSourceStatistics(e).countBytes(e.getIn().getBody(InputStream.class))))
                 .choice()
                 .when(header(FILE_HANDLE).endsWith(".zip"))
                 .to("direct:insertToPeliasFromZipArchive")
                 .otherwise()
                 .log(LoggingLevel.INFO, "Updating indexes in elasticsearch from file: ${header." + FILE_HANDLE + "}")
+                .process(e -> e.setProperty(GeoCoderConstants.GEOCODER_BULK_STATISTICS, new ElasticsearchBulkStatistics()))
                 .toD("${header." + CONVERSION_ROUTE + "}")
-                .to("direct:invokePeliasBulkCommand")
+                .process(e -> addIndexedDocumentsToSourceStatistics(e))
+                .log(LoggingLevel.INFO, "Finished updating indexes in elasticsearch from file: ${header." + FILE_HANDLE + "}: ${exchangeProperty." + GeoCoderConstants.GEOCODER_BULK_STATISTICS + "}")
                 .end()
                 .routeId("pelias-insert-from-folder");
 
 
+        // Stream entries directly from the archive instead of extracting it to disk. Entries share the archive stream, so they are converted
+        // one at a time. Archives for the same source are still processed concurrently.
         from("direct:insertToPeliasFromZipArchive")
-                .process(e -> ZipFileUtils.unzipFile(e.getIn().getBody(InputStream.class), e.getIn().getHeader(WORKING_DIRECTORY, String.class)))
-                .split().exchange(e -> listFiles(e)).stopOnException()
+                .process(e -> e.getIn().setBody(new ZipEntryIterator(e.getIn().getBody(InputStream.class), e.getIn().getHeader(FILE_EXTENSION, String.class))))
+                .split(body()).streaming().stopOnException()
                 .aggregationStrategy(new MarkContentChangedAggregationStrategy())
                 .to("direct:haltIfAborted")
-                .log(LoggingLevel.INFO, "Updating indexes in elasticsearch from file: ${body.name}")
+                .setHeader(ENTRY_NAME, simple("${body.name}"))
+                .log(LoggingLevel.INFO, "Updating indexes in elasticsearch from file: ${header." + ENTRY_NAME + "}")
+                .process(e -> e.getIn().setBody(e.getIn().getBody(ZipEntryIterator.Entry.class).getInputStream()))
+                .process(e -> e.setProperty(GeoCoderConstants.GEOCODER_BULK_STATISTICS, new ElasticsearchBulkStatistics()))
                 .toD("${header." + CONVERSION_ROUTE + "}")
-                .to("direct:invokePeliasBulkCommand")
+                .process(e -> addIndexedDocumentsToSourceStatistics(e))
+                .log(LoggingLevel.INFO, "Finished updating indexes in elasticsearch from file: ${header." + ENTRY_NAME + "}: ${exchangeProperty." + GeoCoderConstants.GEOCODER_BULK_STATISTICS + "}")
                 .end()
-                .process(e -> deleteDirectory(new File(e.getIn().getHeader(WORKING_DIRECTORY, String.class))))
                 .routeId("pelias-insert-from-zip");
 
-        from("direct:convertToPeliasCommandsFromKartverketSOSI")
-                .bean("kartverketSosiStreamToElasticsearchCommands", "transform")
-                .routeId("pelias-convert-commands-kartverket-sosi");
+        from("direct:insertToPeliasFromAdminUnitRepository")
+                .to("direct:haltIfAborted")
+                .log(LoggingLevel.INFO, "Updating indexes in elasticsearch from admin unit repository")
+                .process(e -> e.setProperty(GeoCoderConstants.GEOCODER_BULK_STATISTICS, new ElasticsearchBulkStatistics()))
+                .process(e -> e.getIn().setBody(kartverketSosiStreamToElasticsearchCommands.transform(
+                        e.getProperty(GeoCoderConstants.GEOCODER_ADMIN_UNIT_REPO, AdminUnitRepository.class).getAdminUnits())))
+                .to("direct:invokePeliasBulkCommand")
+                .process(e -> addIndexedDocumentsToSourceStatistics(e))
+                .log(LoggingLevel.INFO, "Finished updating indexes in elasticsearch from admin unit repository: ${exchangeProperty." + GeoCoderConstants.GEOCODER_BULK_STATISTICS + "}")
+                .routeId("pelias-insert-from-admin-unit-repository");
 
         from("direct:convertToPeliasCommandsFromPlaceNames")
-                .process(e -> filterSosiFile(e))
-                .bean("kartverketSosiStreamToElasticsearchCommands", "transform")
+                .process(e -> e.getIn().setBody(kartverketSosiStreamToElasticsearchCommands.transform(e.getIn().getBody(InputStream.class), sosiMatcher)))
+                .to("direct:invokePeliasBulkCommand")
                 .routeId("pelias-convert-commands-place_names");
 
 
+        // Address file is huge, stream batches of commands to elasticsearch instead of converting the whole file first
         from("direct:convertToPeliasCommandsFromAddresses")
-                .bean("addressStreamToElasticSearchCommands", "transform")
+                .bean("addressStreamToElasticSearchCommands", "transformInBatches(${body}, " + insertBatchSize + ")")
+                .split(body()).streaming().parallelProcessing().executorService(bulkExecutorService).stopOnException()
+                .aggregationStrategy(new MarkContentChangedAggregationStrategy())
+                .bean("peliasIndexValidCommandFilter")
+                .bean("peliasIndexParentInfoEnricher")
+                .to("direct:sendPeliasBulkRequest")
+                .end()
                 .routeId("pelias-convert-commands-from-addresses");
 
         from("direct:convertToPeliasCommandsFromTiamat")
                 .bean("deliveryPublicationStreamToElasticsearchCommands", "transform")
+                .to("direct:invokePeliasBulkCommand")
                 .routeId("pelias-convert-commands-from-tiamat");
 
 
         from("direct:invokePeliasBulkCommand")
                 .bean("peliasIndexValidCommandFilter")
                 .bean("peliasIndexParentInfoEnricher")
-                .setHeader(Exchange.HTTP_METHOD, constant(org.apache.camel.component.http4.HttpMethods.POST))
-                .setHeader(Exchange.CONTENT_TYPE, constant("application/json; charset=utf-8"))
                 .split().exchange(e ->
-                                          Lists.partition(e.getIn().getBody(List.class), insertBatchSize)).stopOnException()
+                                          Lists.partition(e.getIn().getBody(List.class), insertBatchSize))
+                .parallelProcessing().executorService(bulkExecutorService).stopOnException()
                 .aggregationStrategy(new MarkContentChangedAggregationStrategy())
+                .to("direct:sendPeliasBulkRequest")
+                .end()
+                .routeId("pelias-invoke-bulk-command");
+
+        from("direct:sendPeliasBulkRequest")
                 .to("direct:haltIfAborted")
-                .bean("elasticsearchCommandWriterService")
+                .setHeader(Exchange.HTTP_METHOD, constant(org.apache.camel.component.http4.HttpMethods.POST))
+                .setHeader(Exchange.CONTENT_TYPE, constant("application/json; charset=utf-8"))
+                .setProperty(ElasticsearchBulkResponseHandler.BULK_ATTEMPT, constant(0))
+                .loopDoWhile(body().isNotNull())
+                .setProperty(ElasticsearchBulkResponseHandler.BULK_COMMANDS, body())
+                .bean("elasticsearchCommandWriterService", "toBulkRequestEntity")
                 .log(LoggingLevel.INFO, "Adding batch of indexes to elasticsearch for ${header." + FILE_HANDLE + "}")
                 .toD(elasticsearchScratchUrl + "/_bulk")
-                .setHeader(CONTENT_CHANGED, constant(true))                // TODO parse response?
+                .bean("elasticsearchBulkResponseHandler", "handleResponse")
+                .end()
                 .log(LoggingLevel.INFO, "Finished adding batch of indexes to elasticsearch for ${header." + FILE_HANDLE + "}")
-
-                .routeId("pelias-invoke-bulk-command");
+                .routeId("pelias-send-bulk-request");
 
         from("direct:haltIfAborted")
                 .choice()
@@ -273,20 +355,18 @@ public class PeliasUpdateEsIndexRouteBuilder extends BaseRouteBuilder {
     }
 
 
-    private Collection<File> listFiles(Exchange e) {
-        String fileExtension = e.getIn().getHeader(FILE_EXTENSION, String.class);
-        String directory = e.getIn().getHeader(WORKING_DIRECTORY, String.class);
-        return FileUtils.listFiles(new File(directory), new String[]{fileExtension}, true);
+    private PeliasSourceStatistics getSourceStatistics(Exchange e) {
+        return e.getProperty(GeoCoderConstants.GEOCODER_SOURCE_STATISTICS, PeliasSourceStatistics.class);
     }
 
-    // Create a new Sosi file with only certain types. File with place names is huge and parser does not support streaming.
-    private void filterSosiFile(Exchange e) {
-        String filteredFile = localWorkingDirectory + "/filtered_place_name.sos";
-        sosiFileFilter.filterElements(e.getIn().getBody(InputStream.class), filteredFile, sosiMatcher);
-        e.getIn().setBody(new File(filteredFile));
+    private void addIndexedDocumentsToSourceStatistics(Exchange e) {
+        ElasticsearchBulkStatistics bulkStatistics = e.getProperty(GeoCoderConstants.GEOCODER_BULK_STATISTICS, ElasticsearchBulkStatistics.class);
+        if (bulkStatistics != null) {
+            getSourceStatistics(e).addDocuments(bulkStatistics.getIndexed());
+        }
     }
 
-
+    // File with place names is huge, only elements with whitelisted types are parsed while streaming the file.
     Function<Pair<String, String>, Boolean> sosiMatcher = kv -> {
         if (!"NAVNEOBJEKTTYPE".equals(kv.getKey())) {
             return false;
@@ -17,33 +17,67 @@
 package no.entur.kakka.geocoder.routes.pelias.elasticsearch;
 
 
+import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import no.entur.kakka.geocoder.routes.pelias.json.PeliasDocument;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.util.Collection;
 
-
+/**
+ * Writes elasticsearch commands as _bulk request NDJSON directly to the target.
+ * <p>
+ * Serializers are shared between all writers, as ObjectWriters are immutable and thread safe.
+ */
 public class ElasticsearchBulkCommandWriter {
 
-	private Writer writer;
-	private ObjectMapper mapper;
+	private static final ObjectMapper MAPPER = new ObjectMapper().disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+	private static final ObjectWriter COMMAND_WRITER = MAPPER.writerFor(ElasticsearchCommand.class);
+
+	private static final ObjectWriter PELIAS_DOCUMENT_WRITER = MAPPER.writerFor(PeliasDocument.class);
+
+	private static final ObjectWriter SOURCE_WRITER = MAPPER.writer();
+
+	private final JsonGenerator generator;
 
 	public ElasticsearchBulkCommandWriter(Writer writer) {
-		this.writer = writer;
-		mapper = new ObjectMapper();
-		mapper.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		try {
+			this.generator = configure(MAPPER.getFactory().createGenerator(writer));
+		} catch (IOException ioE) {
+			throw new RuntimeException("Failed to create elasticsearch command writer: " + ioE.getMessage(), ioE);
+		}
+	}
+
+	public ElasticsearchBulkCommandWriter(OutputStream outputStream) {
+		try {
+			this.generator = configure(MAPPER.getFactory().createGenerator(outputStream, JsonEncoding.UTF8));
+		} catch (IOException ioE) {
+			throw new RuntimeException("Failed to create elasticsearch command writer: " + ioE.getMessage(), ioE);
+		}
+	}
 
+	private static JsonGenerator configure(JsonGenerator generator) {
+		// Lines are separated explicitly, and target is owned by caller
+		generator.setRootValueSeparator(null);
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		return generator;
 	}
 
 	public void write(ElasticsearchCommand elasticsearchCommand) throws IOException {
-		mapper.writeValue(writer, elasticsearchCommand);
-		writer.append("\n");
+		COMMAND_WRITER.writeValue(generator, elasticsearchCommand);
+		generator.writeRaw('\n');
 
-		if (elasticsearchCommand.getSource() != null) {
-			mapper.writeValue(writer, elasticsearchCommand.getSource());
-			writer.append("\n");
+		Object source = elasticsearchCommand.getSource();
+		if (source != null) {
+			ObjectWriter sourceWriter = source.getClass() == PeliasDocument.class ? PELIAS_DOCUMENT_WRITER : SOURCE_WRITER;
+			sourceWriter.writeValue(generator, source);
+			generator.writeRaw('\n');
 		}
 	}
 
@@ -51,8 +85,11 @@ public class ElasticsearchBulkCommandWriter {
 		for (ElasticsearchCommand elasticsearchCommand : elasticsearchCommands) {
 			write(elasticsearchCommand);
 		}
-
+		flush();
 	}
 
+	public void flush() throws IOException {
+		generator.flush();
+	}
 
 }
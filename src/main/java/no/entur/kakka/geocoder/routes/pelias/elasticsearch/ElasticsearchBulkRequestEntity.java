@@ -0,0 +1,90 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.routes.pelias.elasticsearch;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Http entity for elasticsearch _bulk request, serializing commands straight to the request stream in chunks instead of building the
+ * payload in memory first. Optionally gzip compressed.
+ */
+public class ElasticsearchBulkRequestEntity extends AbstractHttpEntity {
+
+	private static final int GZIP_BUFFER_SIZE = 8192;
+
+	private final Collection<ElasticsearchCommand> commands;
+
+	private final boolean gzip;
+
+	public ElasticsearchBulkRequestEntity(Collection<ElasticsearchCommand> commands, boolean gzip) {
+		this.commands = commands;
+		this.gzip = gzip;
+		setContentType("application/json; charset=utf-8");
+		setChunked(true);
+		if (gzip) {
+			setContentEncoding("gzip");
+		}
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public long getContentLength() {
+		return -1;
+	}
+
+	/**
+	 * Only for clients not able to write entity to stream, as this requires the whole payload to be kept in memory.
+	 */
+	@Override
+	public InputStream getContent() throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		writeTo(outputStream);
+		return new ByteArrayInputStream(outputStream.toByteArray());
+	}
+
+	@Override
+	public void writeTo(OutputStream outputStream) throws IOException {
+		if (gzip) {
+			GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE);
+			new ElasticsearchBulkCommandWriter(gzipOutputStream).write(commands);
+			gzipOutputStream.finish();
+		} else {
+			new ElasticsearchBulkCommandWriter(outputStream).write(commands);
+		}
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+
+	public Collection<ElasticsearchCommand> getCommands() {
+		return commands;
+	}
+}
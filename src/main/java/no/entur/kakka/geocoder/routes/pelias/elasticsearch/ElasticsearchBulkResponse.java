@@ -0,0 +1,114 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.routes.pelias.elasticsearch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summary of an elasticsearch _bulk response, holding only the number of items and the items that failed.
+ */
+public class ElasticsearchBulkResponse {
+
+	private static final String REJECTED_EXECUTION_ERROR_TYPE = "es_rejected_execution_exception";
+
+	// Older versions of elasticsearch report the error as a plain string starting with the exception name
+	private static final String REJECTED_EXECUTION_EXCEPTION = "EsRejectedExecutionException";
+
+	private static final String DELETE_ACTION = "delete";
+
+	private int itemCount;
+
+	private List<ItemFailure> failures = new ArrayList<>();
+
+	void addItem(int position, String action, int status, String errorType, String errorReason) {
+		itemCount++;
+		if (isNotFoundOnDelete(action, status, errorType, errorReason)) {
+			// Deleting a document that is already gone leaves the index in the requested state
+			return;
+		}
+		if (status >= 300 || errorType != null || errorReason != null) {
+			failures.add(new ItemFailure(position, status, errorType, errorReason));
+		}
+	}
+
+	private boolean isNotFoundOnDelete(String action, int status, String errorType, String errorReason) {
+		return DELETE_ACTION.equals(action) && status == 404 && errorType == null && errorReason == null;
+	}
+
+	public int getItemCount() {
+		return itemCount;
+	}
+
+	public int getSuccessCount() {
+		return itemCount - failures.size();
+	}
+
+	public List<ItemFailure> getFailures() {
+		return failures;
+	}
+
+	public static class ItemFailure {
+
+		private final int position;
+
+		private final int status;
+
+		private final String errorType;
+
+		private final String errorReason;
+
+		ItemFailure(int position, int status, String errorType, String errorReason) {
+			this.position = position;
+			this.status = status;
+			this.errorType = errorType;
+			this.errorReason = errorReason;
+		}
+
+		/**
+		 * Position of the item in the bulk request.
+		 */
+		public int getPosition() {
+			return position;
+		}
+
+		public int getStatus() {
+			return status;
+		}
+
+		public String getErrorType() {
+			return errorType;
+		}
+
+		public String getErrorReason() {
+			return errorReason;
+		}
+
+		/**
+		 * Items rejected because elasticsearch is overloaded may succeed if resent later.
+		 */
+		public boolean isRetryable() {
+			return status == 429 || REJECTED_EXECUTION_ERROR_TYPE.equals(errorType)
+					       || (errorType == null && errorReason != null && errorReason.contains(REJECTED_EXECUTION_EXCEPTION));
+		}
+
+		@Override
+		public String toString() {
+			return "position=" + position + ", status=" + status + ", type=" + errorType + ", reason=" + errorReason;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.routes.pelias.elasticsearch;
+
+import no.entur.kakka.Constants;
+import no.entur.kakka.exceptions.KakkaException;
+import no.entur.kakka.geocoder.GeoCoderConstants;
+import org.apache.camel.Exchange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handle response from elasticsearch _bulk request.
+ * <p>
+ * Items rejected because elasticsearch is overloaded are set as body to be resent after an exponential backoff. Body is set to null when there
+ * is nothing more to send. Other failures are logged and counted.
+ */
+@Service
+public class ElasticsearchBulkResponseHandler {
+
+	public static final String BULK_COMMANDS = "RutebankenElasticsearchBulkCommands";
+	public static final String BULK_ATTEMPT = "RutebankenElasticsearchBulkAttempt";
+
+	private static final long MAX_RETRY_DELAY = 60000;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final ElasticsearchBulkResponseParser parser = new ElasticsearchBulkResponseParser();
+
+	private final int maxRetries;
+
+	private final long retryDelay;
+
+	public ElasticsearchBulkResponseHandler(@Value("${pelias.insert.bulk.retry.max:10}") int maxRetries, @Value("${pelias.insert.bulk.retry.delay:1000}") long retryDelay) {
+		this.maxRetries = maxRetries;
+		this.retryDelay = retryDelay;
+	}
+
+	public void handleResponse(Exchange exchange) throws InterruptedException {
+		List<ElasticsearchCommand> commands = exchange.getProperty(BULK_COMMANDS, List.class);
+		int attempt = exchange.getProperty(BULK_ATTEMPT, 0, Integer.class);
+		ElasticsearchBulkStatistics statistics = exchange.getProperty(GeoCoderConstants.GEOCODER_BULK_STATISTICS, ElasticsearchBulkStatistics.class);
+
+		ElasticsearchBulkResponse response = parse(exchange);
+
+		if (response.getSuccessCount() > 0) {
+			exchange.getIn().setHeader(Constants.CONTENT_CHANGED, true);
+		}
+
+		List<ElasticsearchCommand> commandsToRetry = new ArrayList<>();
+		List<ElasticsearchBulkResponse.ItemFailure> failures = new ArrayList<>();
+		for (ElasticsearchBulkResponse.ItemFailure failure : response.getFailures()) {
+			if (failure.isRetryable() && attempt < maxRetries) {
+				commandsToRetry.add(commands.get(failure.getPosition()));
+			} else {
+				failures.add(failure);
+			}
+		}
+
+		if (!failures.isEmpty()) {
+			logger.warn("Elasticsearch failed to index " + failures.size() + " of " + response.getItemCount() + " items in bulk request. First failure: " + failures.get(0));
+		}
+		if (statistics != null) {
+			statistics.addIndexed(response.getSuccessCount());
+			statistics.addFailed(failures.size());
+			statistics.addRetried(commandsToRetry.size());
+		}
+
+		if (commandsToRetry.isEmpty()) {
+			exchange.getIn().setBody(null);
+		} else {
+			long delay = Math.min(MAX_RETRY_DELAY, retryDelay << Math.min(attempt, 16));
+			logger.info("Elasticsearch rejected " + commandsToRetry.size() + " items in bulk request. Retrying in " + delay + " ms (attempt " + (attempt + 1) + " of " + maxRetries + ")");
+			Thread.sleep(delay);
+			exchange.setProperty(BULK_ATTEMPT, attempt + 1);
+			exchange.getIn().setBody(commandsToRetry);
+		}
+	}
+
+	private ElasticsearchBulkResponse parse(Exchange exchange) {
+		try (InputStream body = exchange.getIn().getBody(InputStream.class)) {
+			return parser.parse(body);
+		} catch (IOException ioE) {
+			throw new KakkaException("Failed to parse elasticsearch bulk response: " + ioE.getMessage(), ioE);
+		}
+	}
+}
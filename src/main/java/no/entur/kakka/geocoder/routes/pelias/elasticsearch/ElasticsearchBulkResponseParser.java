@@ -0,0 +1,99 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.routes.pelias.elasticsearch;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming parser for elasticsearch _bulk responses.
+ * <p>
+ * Walks the items array token by token, collecting status and error for each item without binding the response to a tree.
+ */
+public class ElasticsearchBulkResponseParser {
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	public ElasticsearchBulkResponse parse(InputStream inputStream) throws IOException {
+		ElasticsearchBulkResponse response = new ElasticsearchBulkResponse();
+		try (JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("Expected elasticsearch bulk response to be a json object");
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if ("items".equals(field) && value == JsonToken.START_ARRAY) {
+					int position = 0;
+					while (parser.nextToken() == JsonToken.START_OBJECT) {
+						parseItem(parser, position++, response);
+					}
+				} else {
+					parser.skipChildren();
+				}
+			}
+		}
+		return response;
+	}
+
+	/**
+	 * Parse single item on the form: {"index": {"_id": "1", "status": 429, "error": {"type": "...", "reason": "..."}}}
+	 */
+	private void parseItem(JsonParser parser, int position, ElasticsearchBulkResponse response) throws IOException {
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String action = parser.getCurrentName();
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				parser.skipChildren();
+				continue;
+			}
+			int status = 0;
+			String errorType = null;
+			String errorReason = null;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if ("status".equals(field)) {
+					status = parser.getIntValue();
+				} else if ("error".equals(field)) {
+					if (value == JsonToken.START_OBJECT) {
+						while (parser.nextToken() == JsonToken.FIELD_NAME) {
+							String errorField = parser.getCurrentName();
+							parser.nextToken();
+							if ("type".equals(errorField)) {
+								errorType = parser.getText();
+							} else if ("reason".equals(errorField)) {
+								errorReason = parser.getText();
+							} else {
+								parser.skipChildren();
+							}
+						}
+					} else if (value != JsonToken.VALUE_NULL) {
+						// Older versions of elasticsearch report error as plain string
+						errorReason = parser.getText();
+					}
+				} else {
+					parser.skipChildren();
+				}
+			}
+			response.addItem(position, action, status, errorType, errorReason);
+		}
+	}
+}
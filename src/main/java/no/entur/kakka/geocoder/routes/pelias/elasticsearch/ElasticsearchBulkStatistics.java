@@ -0,0 +1,60 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.routes.pelias.elasticsearch;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts of indexed, failed and retried items for bulk requests, shared by all batches for a single source file.
+ */
+public class ElasticsearchBulkStatistics {
+
+	private final AtomicLong indexed = new AtomicLong();
+
+	private final AtomicLong failed = new AtomicLong();
+
+	private final AtomicLong retried = new AtomicLong();
+
+	public void addIndexed(long count) {
+		indexed.addAndGet(count);
+	}
+
+	public void addFailed(long count) {
+		failed.addAndGet(count);
+	}
+
+	public void addRetried(long count) {
+		retried.addAndGet(count);
+	}
+
+	public long getIndexed() {
+		return indexed.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+
+	public long getRetried() {
+		return retried.get();
+	}
+
+	@Override
+	public String toString() {
+		return "indexed=" + getIndexed() + ", failed=" + getFailed() + ", retried=" + getRetried();
+	}
+}
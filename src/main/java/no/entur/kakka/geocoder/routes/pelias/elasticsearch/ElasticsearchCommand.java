@@ -92,6 +92,12 @@ public class ElasticsearchCommand {
 
     }
 
+    public static ElasticsearchCommand peliasDeleteCommand(String layer, String sourceId) {
+        ElasticsearchCommand command = new ElasticsearchCommand();
+        command.setDelete(new ActionMetaData("pelias", layer, sourceId));
+        return command;
+    }
+
     public String toString() {
         try {
             ObjectMapper mapper = new ObjectMapper();
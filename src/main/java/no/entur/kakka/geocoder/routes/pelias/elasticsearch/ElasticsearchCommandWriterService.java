@@ -16,6 +16,8 @@
 
 package no.entur.kakka.geocoder.routes.pelias.elasticsearch;
 
+import org.apache.http.HttpEntity;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
@@ -25,6 +27,11 @@ import java.util.Collection;
 @Service
 public class ElasticsearchCommandWriterService {
 
+	private final boolean gzip;
+
+	public ElasticsearchCommandWriterService(@Value("${pelias.insert.bulk.gzip:false}") boolean gzip) {
+		this.gzip = gzip;
+	}
 
 	public String write(Collection<ElasticsearchCommand> elasticsearchCommands) {
 		try {
@@ -38,4 +45,11 @@ public class ElasticsearchCommandWriterService {
 
 	}
 
+	/**
+	 * Create request entity writing commands directly to the http request stream.
+	 */
+	public HttpEntity toBulkRequestEntity(Collection<ElasticsearchCommand> elasticsearchCommands) {
+		return new ElasticsearchBulkRequestEntity(elasticsearchCommands, gzip);
+	}
+
 }
@@ -21,6 +21,7 @@ import org.springframework.util.CollectionUtils;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 
 @JsonRootName("parent")
 @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -161,6 +162,27 @@ public class Parent {
 		return CollectionUtils.isEmpty(list) ? null : list.get(0);
 	}
 
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+
+		Parent that = (Parent) o;
+
+		return Objects.equals(countryList, that.countryList) && Objects.equals(countyList, that.countyList)
+				       && Objects.equals(postalCodeList, that.postalCodeList) && Objects.equals(localadminList, that.localadminList)
+				       && Objects.equals(localityList, that.localityList) && Objects.equals(boroughList, that.boroughList)
+				       && Objects.equals(countryIdList, that.countryIdList) && Objects.equals(countyIdList, that.countyIdList)
+				       && Objects.equals(postalCodeIdList, that.postalCodeIdList) && Objects.equals(localadminIdList, that.localadminIdList)
+				       && Objects.equals(localityIdList, that.localityIdList) && Objects.equals(boroughIdList, that.boroughIdList);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(countryList, countyList, postalCodeList, localadminList, localityList, boroughList,
+				countryIdList, countyIdList, postalCodeIdList, localadminIdList, localityIdList, boroughIdList);
+	}
+
 	public static Parent.Builder builder() {
 		return new Parent.Builder();
 	}
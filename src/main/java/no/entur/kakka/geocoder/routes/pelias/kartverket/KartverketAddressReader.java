@@ -25,21 +25,33 @@ import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 public class KartverketAddressReader {
 
 
 	public Collection<KartverketAddress> read(InputStream inputStream) {
-		BeanReader in = getBeanReader(inputStream);
-
-		List<KartverketAddress> addresses = asList(in);
+		try (Stream<KartverketAddress> addresses = stream(inputStream)) {
+			return addresses.collect(Collectors.toList());
+		}
+	}
 
-		in.close();
-		return addresses;
+	/**
+	 * Read addresses lazily, one record at a time. The underlying reader is closed when the stream is exhausted or closed.
+	 */
+	public Stream<KartverketAddress> stream(InputStream inputStream) {
+		BeanReader in = getBeanReader(inputStream);
+		AddressIterator iterator = new AddressIterator(in);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				       .onClose(iterator::close);
 	}
 
 	private BeanReader getBeanReader(InputStream inputStream) {
@@ -60,16 +72,52 @@ public class KartverketAddressReader {
 		return factory.createReader(streamName, buffReader);
 	}
 
-	private List<KartverketAddress> asList(BeanReader in) {
-		List<KartverketAddress> addresses = new ArrayList<>();
-		Object record;
-		while ((record = in.read()) != null) {
-			if (in.getLineNumber() > 1) {
-				KartverketAddress address = (KartverketAddress) record;
-				addresses.add(address);
+	private static class AddressIterator implements Iterator<KartverketAddress> {
+
+		private final BeanReader in;
+
+		private KartverketAddress next;
+
+		private boolean exhausted;
+
+		AddressIterator(BeanReader in) {
+			this.in = in;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next == null && !exhausted) {
+				next = readNext();
 			}
+			return next != null;
+		}
+
+		@Override
+		public KartverketAddress next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			KartverketAddress address = next;
+			next = null;
+			return address;
+		}
 
+		private KartverketAddress readNext() {
+			Object record;
+			while ((record = in.read()) != null) {
+				if (in.getLineNumber() > 1) {
+					return (KartverketAddress) record;
+				}
+			}
+			close();
+			return null;
+		}
+
+		void close() {
+			if (!exhausted) {
+				exhausted = true;
+				in.close();
+			}
 		}
-		return addresses;
 	}
 }
@@ -40,6 +40,9 @@ public class PeliasIndexValidCommandFilter {
 	}
 
 	boolean isValid(ElasticsearchCommand command) {
+		if (command != null && command.getDelete() != null) {
+			return isValidDelete(command);
+		}
 		if (command == null || command.getIndex() == null) {
 			logger.warn("Removing invalid command");
 			return false;
@@ -69,4 +72,12 @@ public class PeliasIndexValidCommandFilter {
 		return true;
 	}
 
+	private boolean isValidDelete(ElasticsearchCommand command) {
+		if (command.getDelete().getIndex() == null || command.getDelete().getType() == null || command.getDelete().getId() == null) {
+			logger.warn("Removing invalid delete command with missing index name, type or id:" + command);
+			return false;
+		}
+		return true;
+	}
+
 }
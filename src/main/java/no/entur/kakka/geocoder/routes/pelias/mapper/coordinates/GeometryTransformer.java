@@ -27,15 +27,26 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.MathTransform;
 import org.opengis.referencing.operation.TransformException;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Transforms geometries and coordinates from UTM to WGS84.
+ * <p>
+ * Looking up a MathTransform is expensive compared to applying it, so transforms are cached per UTM zone. Transforms are immutable
+ * and the singleton may be used by concurrent callers.
+ */
 public class GeometryTransformer {
 
     private static final String WGS84_EPSG = "EPSG:4326";
 
-    private static GeometryTransformer instance;
+    private static volatile GeometryTransformer instance;
+
+    private final CRSAuthorityFactory factory;
 
-    private CRSAuthorityFactory factory;
+    private final CoordinateReferenceSystem wgs84;
 
-    private CoordinateReferenceSystem wgs84;
+    private final ConcurrentMap<String, MathTransform> transformsPerUtmZone = new ConcurrentHashMap<>();
 
 
     private GeometryTransformer() throws FactoryException {
@@ -52,6 +63,15 @@ public class GeometryTransformer {
         return getInstance().transformFromUTM(coordinate, utmZone);
     }
 
+    /**
+     * Transform coordinates from UTM to WGS84 in place.
+     *
+     * @param coordinates pairs of easting and northing, replaced by pairs of longitude and latitude
+     */
+    public static void fromUTM(double[] coordinates, String utmZone) throws FactoryException {
+        getInstance().transformFromUTM(coordinates, utmZone);
+    }
+
     private <T extends Geometry> T transformFromUTM(T geometry, String utmZone) throws FactoryException, TransformException {
         return (T) JTS.transform(geometry, getMathTransform(utmZone));
     }
@@ -65,8 +85,40 @@ public class GeometryTransformer {
         }
     }
 
+    private void transformFromUTM(double[] coordinates, String utmZone) throws FactoryException {
+        MathTransform transform = getMathTransform(utmZone);
+        // Transform into a separate array, as a failing batch transform may already have overwritten some of the points
+        double[] transformed = new double[coordinates.length];
+        try {
+            transform.transform(coordinates, 0, transformed, 0, coordinates.length / 2);
+            System.arraycopy(transformed, 0, coordinates, 0, coordinates.length / 2 * 2);
+        } catch (TransformException transformationException) {
+            // Transform points one by one, so that only points too far outside the zone need the fallback
+            double[] point = new double[2];
+            for (int i = 0; i + 1 < coordinates.length; i += 2) {
+                try {
+                    transform.transform(coordinates, i, point, 0, 1);
+                } catch (TransformException e) {
+                    Coordinate fallback = new UTM2Deg(utmZone, 'N', coordinates[i], coordinates[i + 1]).get();
+                    point[0] = fallback.x;
+                    point[1] = fallback.y;
+                }
+                coordinates[i] = point[0];
+                coordinates[i + 1] = point[1];
+            }
+        }
+    }
+
     private MathTransform getMathTransform(String fromUtmZone) throws FactoryException {
-        return CRS.findMathTransform(utmCoordinateReferenceSystem(fromUtmZone), wgs84);
+        MathTransform transform = transformsPerUtmZone.get(fromUtmZone);
+        if (transform == null) {
+            transform = CRS.findMathTransform(utmCoordinateReferenceSystem(fromUtmZone), wgs84);
+            MathTransform existing = transformsPerUtmZone.putIfAbsent(fromUtmZone, transform);
+            if (existing != null) {
+                transform = existing;
+            }
+        }
+        return transform;
     }
 
 
@@ -75,10 +127,17 @@ public class GeometryTransformer {
     }
 
     private static GeometryTransformer getInstance() throws FactoryException {
-        if (instance == null) {
-            instance = new GeometryTransformer();
+        GeometryTransformer transformer = instance;
+        if (transformer == null) {
+            synchronized (GeometryTransformer.class) {
+                transformer = instance;
+                if (transformer == null) {
+                    transformer = new GeometryTransformer();
+                    instance = transformer;
+                }
+            }
         }
-        return instance;
+        return transformer;
     }
 
 
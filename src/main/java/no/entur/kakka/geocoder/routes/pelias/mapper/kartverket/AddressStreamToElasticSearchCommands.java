@@ -24,9 +24,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.stream.Collectors;
 
 @Service
@@ -56,5 +59,58 @@ public class AddressStreamToElasticSearchCommands {
         return peliasDocuments.stream().map(d -> ElasticsearchCommand.peliasIndexCommand(d)).collect(Collectors.toList());
     }
 
+    /**
+     * Stream addresses to batches of elastic search commands.
+     * <p>
+     * Addresses are read and mapped lazily, one batch at a time. Only the information needed to create street documents
+     * is kept for the whole file, and the street documents are emitted after the last address.
+     */
+    public Iterator<List<ElasticsearchCommand>> transformInBatches(InputStream addressStream, int batchSize) {
+        return new CommandBatchIterator(new KartverketAddressReader().stream(addressStream).iterator(), batchSize);
+    }
+
+    private class CommandBatchIterator implements Iterator<List<ElasticsearchCommand>> {
+
+        private final Iterator<KartverketAddress> addresses;
+
+        private final int batchSize;
+
+        private final AddressToStreetMapper.StreetAccumulator streetAccumulator = addressToStreetMapper.createStreetAccumulator();
+
+        private Iterator<PeliasDocument> streets;
+
+        CommandBatchIterator(Iterator<KartverketAddress> addresses, int batchSize) {
+            this.addresses = addresses;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (addresses.hasNext()) {
+                return true;
+            }
+            if (streets == null) {
+                streets = streetAccumulator.createStreetPeliasDocuments().iterator();
+            }
+            return streets.hasNext();
+        }
+
+        @Override
+        public List<ElasticsearchCommand> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            List<ElasticsearchCommand> batch = new ArrayList<>(batchSize);
+            while (batch.size() < batchSize && addresses.hasNext()) {
+                PeliasDocument document = addressMapper.toPeliasDocument(addresses.next());
+                streetAccumulator.add(document);
+                batch.add(ElasticsearchCommand.peliasIndexCommand(document));
+            }
+            while (batch.size() < batchSize && hasNext()) {
+                batch.add(ElasticsearchCommand.peliasIndexCommand(streets.next()));
+            }
+            return batch;
+        }
+    }
 
 }
@@ -17,9 +17,6 @@
 package no.entur.kakka.geocoder.routes.pelias.mapper.kartverket;
 
 
-import com.vividsolutions.jts.geom.Coordinate;
-import com.vividsolutions.jts.geom.GeometryFactory;
-import com.vividsolutions.jts.geom.Point;
 import no.entur.kakka.geocoder.routes.pelias.json.AddressParts;
 import no.entur.kakka.geocoder.routes.pelias.json.GeoPoint;
 import no.entur.kakka.geocoder.routes.pelias.json.Parent;
@@ -49,8 +46,6 @@ public class AddressToPeliasMapper {
 
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
-	private GeometryFactory factory = new GeometryFactory();
-
 	public PeliasDocument toPeliasDocument(KartverketAddress address) {
 		PeliasDocument document = new PeliasDocument("address", SOURCE, address.getAddresseId());
 		document.setAddressParts(toAddressParts(address));
@@ -76,10 +71,10 @@ public class AddressToPeliasMapper {
 			logger.info("Ignoring center point for address with non-utm coordinate system: " + address.getKoordinatsystemKode());
 			return null;
 		}
-		Point p = factory.createPoint(new Coordinate(address.getOst(), address.getNord()));
+		double[] coordinate = new double[]{address.getOst(), address.getNord()};
 		try {
-			Point conv = GeometryTransformer.fromUTM(p, utmZone);
-			return new GeoPoint(conv.getY(), conv.getX());
+			GeometryTransformer.fromUTM(coordinate, utmZone);
+			return new GeoPoint(coordinate[1], coordinate[0]);
 		} catch (Exception e) {
 			logger.info("Ignoring center point for address (" + address.getAddresseId() + ") where geometry transformation failed: " + address.getKoordinatsystemKode());
 		}
@@ -17,16 +17,20 @@
 package no.entur.kakka.geocoder.routes.pelias.mapper.kartverket;
 
 import no.entur.kakka.geocoder.routes.pelias.json.AddressParts;
+import no.entur.kakka.geocoder.routes.pelias.json.GeoPoint;
+import no.entur.kakka.geocoder.routes.pelias.json.Parent;
 import no.entur.kakka.geocoder.routes.pelias.json.PeliasDocument;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.function.Function;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -50,24 +54,29 @@ public class AddressToStreetMapper {
     }
 
     public List<PeliasDocument> createStreetPeliasDocumentsFromAddresses(Collection<PeliasDocument> addresses) {
-        Collection<List<PeliasDocument>> addressesPerStreet =
-                addresses.stream().filter(a -> a.getAddressParts() != null && !StringUtils.isEmpty(a.getAddressParts().getStreet()))
-                        .collect(Collectors.groupingBy(a -> fromAddress(a), Collectors.mapping(Function.identity(), Collectors.toList()))).values();
-        return addressesPerStreet.stream().map(addressesOnStreet -> createPeliasStreetDocFromAddresses(addressesOnStreet)).collect(Collectors.toList());
+        StreetAccumulator accumulator = createStreetAccumulator();
+        addresses.forEach(accumulator::add);
+        return accumulator.createStreetPeliasDocuments();
     }
 
+    /**
+     * Create accumulator for building street documents from a stream of addresses without keeping the address documents.
+     */
+    public StreetAccumulator createStreetAccumulator() {
+        return new StreetAccumulator();
+    }
 
-    private PeliasDocument createPeliasStreetDocFromAddresses(List<PeliasDocument> addressesOnStreet) {
-        PeliasDocument templateAddress = getAddressRepresentingStreet(addressesOnStreet);
+    private PeliasDocument createPeliasStreetDocFromAddresses(String streetName, StreetAddresses addressesOnStreet) {
+        int templateAddress = addressesOnStreet.getAddressRepresentingStreet();
+        Parent parent = addressesOnStreet.getParent(templateAddress);
 
-        String streetName = templateAddress.getAddressParts().getStreet();
-        String uniqueId = templateAddress.getParent().getLocalityId() + "-" + streetName;
+        String uniqueId = parent.getLocalityId() + "-" + streetName;
         PeliasDocument streetDocument = new PeliasDocument("address", uniqueId);
 
         streetDocument.setDefaultNameAndPhrase(streetName);
-        streetDocument.setParent(templateAddress.getParent());
+        streetDocument.setParent(parent);
 
-        streetDocument.setCenterPoint(templateAddress.getCenterPoint());
+        streetDocument.setCenterPoint(addressesOnStreet.getCenterPoint(templateAddress));
         AddressParts addressParts = new AddressParts();
         addressParts.setName(streetName);
         addressParts.setStreet(streetName);
@@ -80,15 +89,95 @@ public class AddressToStreetMapper {
     }
 
     /**
-     * Use median address in street (ordered by number + alpha) as representative of the street.
+     * Collects the minimum of information needed per (street, locality) to create street documents.
      */
-    private PeliasDocument getAddressRepresentingStreet(List<PeliasDocument> addressesOnStreet) {
-        Collections.sort(addressesOnStreet,
-                (o1, o2) -> o1.getAddressParts().getNumber().compareTo(o2.getAddressParts().getNumber()));
+    public class StreetAccumulator {
+
+        private Map<UniqueStreetKey, StreetAddresses> addressesPerStreet = new LinkedHashMap<>();
+
+        private StreetAccumulator() {
+        }
+
+        public void add(PeliasDocument address) {
+            if (address.getAddressParts() == null || StringUtils.isEmpty(address.getAddressParts().getStreet())) {
+                return;
+            }
+            addressesPerStreet.computeIfAbsent(fromAddress(address), k -> new StreetAddresses())
+                    .add(address.getAddressParts().getNumber(), address.getDefaultName(), address.getCenterPoint(), address.getParent());
+        }
 
-        return addressesOnStreet.get(addressesOnStreet.size() / 2);
+        public List<PeliasDocument> createStreetPeliasDocuments() {
+            return addressesPerStreet.entrySet().stream()
+                           .map(e -> createPeliasStreetDocFromAddresses(e.getKey().streetName, e.getValue())).collect(Collectors.toList());
+        }
     }
 
+    /**
+     * Numbers and coordinates of the addresses in a street, kept in arrays instead of an object per address. The addresses in a street
+     * mostly share the same parent, so every distinct parent is kept once and referred to by index.
+     */
+    private static class StreetAddresses {
+
+        private final List<Parent> parents = new ArrayList<>(1);
+
+        private String[] numbers = new String[4];
+
+        private String[] defaultNames = new String[4];
+
+        private double[] coordinates = new double[8];
+
+        private int[] parentIndexes = new int[4];
+
+        private int size;
+
+        void add(String number, String defaultName, GeoPoint centerPoint, Parent parent) {
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size * 2);
+                defaultNames = Arrays.copyOf(defaultNames, size * 2);
+                coordinates = Arrays.copyOf(coordinates, size * 4);
+                parentIndexes = Arrays.copyOf(parentIndexes, size * 2);
+            }
+
+            int parentIndex = parents.indexOf(parent);
+            if (parentIndex < 0) {
+                parentIndex = parents.size();
+                parents.add(parent);
+            }
+
+            numbers[size] = number;
+            defaultNames[size] = defaultName;
+            boolean hasCenterPoint = centerPoint != null && centerPoint.getLat() != null && centerPoint.getLon() != null;
+            coordinates[2 * size] = hasCenterPoint ? centerPoint.getLat() : Double.NaN;
+            coordinates[2 * size + 1] = hasCenterPoint ? centerPoint.getLon() : Double.NaN;
+            parentIndexes[size] = parentIndex;
+            size++;
+        }
+
+        /**
+         * Use median address in street (ordered by number + alpha) as representative of the street. Addresses with the same number
+         * (ie 12A and 12B) are ordered by name, as the addresses used to be sorted by name before being grouped by street.
+         */
+        int getAddressRepresentingStreet() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparing((Integer i) -> numbers[i])
+                                       .thenComparing(i -> defaultNames[i], Comparator.nullsFirst(Comparator.<String>naturalOrder())));
+            return order[size / 2];
+        }
+
+        GeoPoint getCenterPoint(int address) {
+            if (Double.isNaN(coordinates[2 * address])) {
+                return null;
+            }
+            return new GeoPoint(coordinates[2 * address], coordinates[2 * address + 1]);
+        }
+
+        Parent getParent(int address) {
+            return parents.get(parentIndexes[address]);
+        }
+    }
 
     private UniqueStreetKey fromAddress(PeliasDocument address) {
 
@@ -18,14 +18,26 @@ package no.entur.kakka.geocoder.routes.pelias.mapper.kartverket;
 
 import no.entur.kakka.geocoder.netex.TopographicPlaceAdapter;
 import no.entur.kakka.geocoder.routes.pelias.elasticsearch.ElasticsearchCommand;
+import no.entur.kakka.geocoder.routes.pelias.json.PeliasDocument;
+import no.entur.kakka.geocoder.sosi.SosiCoordinates;
+import no.entur.kakka.geocoder.sosi.SosiElementReader;
 import no.entur.kakka.geocoder.sosi.SosiElementWrapperFactory;
+import no.entur.kakka.geocoder.sosi.SosiPlace;
 import no.entur.kakka.geocoder.sosi.SosiTopographicPlaceAdapterReader;
+import no.vegvesen.nvdb.sosi.document.SosiElement;
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -43,10 +55,44 @@ public class KartverketSosiStreamToElasticsearchCommands {
 
 
     public Collection<ElasticsearchCommand> transform(InputStream placeNamesStream) {
-        return new SosiTopographicPlaceAdapterReader(sosiElementWrapperFactory, placeNamesStream).read().stream()
+        return transform(new SosiTopographicPlaceAdapterReader(sosiElementWrapperFactory, placeNamesStream).read());
+    }
+
+    /**
+     * Transform topographic places that have already been read, e.g. the admin units read for reverse geocoding.
+     */
+    public Collection<ElasticsearchCommand> transform(Collection<TopographicPlaceAdapter> topographicPlaces) {
+        return topographicPlaces.stream()
                        .map(w -> ElasticsearchCommand.peliasIndexCommand(createMapper(w).toPeliasDocument())).filter(d -> d != null).collect(Collectors.toList());
     }
 
+    /**
+     * Transform place names while streaming the SOSI file, parsing only elements matched by the matcher.
+     * <p>
+     * Places are points with their own coordinates and are mapped as soon as they are read. Other elements are ignored, as
+     * they may refer to shapes elsewhere in the file. As when reading the whole file, the first place read for an id is kept.
+     */
+    public Collection<ElasticsearchCommand> transform(InputStream placeNamesStream, Function<Pair<String, String>, Boolean> elementMatcher) {
+        List<ElasticsearchCommand> commands = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        try (SosiElementReader reader = new SosiElementReader(placeNamesStream, elementMatcher)) {
+            SosiCoordinates coordinates = new SosiCoordinates(reader.getHead());
+            SosiElement sosiElement;
+            while ((sosiElement = reader.next()) != null) {
+                TopographicPlaceAdapter place = sosiElementWrapperFactory.createWrapper(sosiElement, coordinates);
+                if (place instanceof SosiPlace && place.isValid() && ids.add(place.getId())) {
+                    PeliasDocument document = createMapper(place).toPeliasDocument();
+                    if (document != null) {
+                        commands.add(ElasticsearchCommand.peliasIndexCommand(document));
+                    }
+                }
+            }
+        } catch (IOException ioE) {
+            throw new RuntimeException("Failed to read place names from SOSI: " + ioE.getMessage(), ioE);
+        }
+        return commands;
+    }
+
     TopographicPlaceAdapterToPeliasDocument createMapper(TopographicPlaceAdapter wrapper) {
 
         switch (wrapper.getType()) {
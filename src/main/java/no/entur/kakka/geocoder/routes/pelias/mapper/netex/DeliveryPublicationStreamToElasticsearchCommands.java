@@ -21,21 +21,24 @@ import no.entur.kakka.geocoder.routes.pelias.elasticsearch.ElasticsearchCommand;
 import no.entur.kakka.geocoder.routes.pelias.json.PeliasDocument;
 import no.entur.kakka.geocoder.routes.pelias.mapper.netex.boost.StopPlaceBoostConfiguration;
 import org.apache.commons.collections4.CollectionUtils;
-import org.rutebanken.netex.model.Common_VersionFrameStructure;
 import org.rutebanken.netex.model.GroupOfStopPlaces;
 import org.rutebanken.netex.model.PublicationDeliveryStructure;
-import org.rutebanken.netex.model.Site_VersionFrameStructure;
 import org.rutebanken.netex.model.StopPlace;
 import org.rutebanken.netex.model.TopographicPlace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
-import javax.xml.transform.stream.StreamSource;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -48,11 +51,24 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-import static javax.xml.bind.JAXBContext.newInstance;
-
 @Service
 public class DeliveryPublicationStreamToElasticsearchCommands {
 
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryPublicationStreamToElasticsearchCommands.class);
+
+    private static final String STOP_PLACES = "stopPlaces";
+    private static final String STOP_PLACE = "StopPlace";
+    private static final String TOPOGRAPHIC_PLACES = "topographicPlaces";
+    private static final String TOPOGRAPHIC_PLACE = "TopographicPlace";
+    private static final String GROUPS_OF_STOP_PLACES = "groupsOfStopPlaces";
+    private static final String GROUP_OF_STOP_PLACES = "GroupOfStopPlaces";
+
+    private static final String KEY_IS_PARENT_STOP_PLACE = "IS_PARENT_STOP_PLACE";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+    // Creating a JAXBContext is expensive, while the context itself is thread safe and can be shared
+    private static final JAXBContext PUBLICATION_DELIVERY_CONTEXT = createContext();
 
     private StopPlaceBoostConfiguration stopPlaceBoostConfiguration;
 
@@ -79,44 +95,198 @@ public class DeliveryPublicationStreamToElasticsearchCommands {
     }
 
     public Collection<ElasticsearchCommand> transform(InputStream publicationDeliveryStream) {
+        XMLStreamReader reader = null;
         try {
-            PublicationDeliveryStructure deliveryStructure = unmarshall(publicationDeliveryStream);
-            return fromDeliveryPublicationStructure(deliveryStructure);
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(publicationDeliveryStream);
+            return fromDeliveryPublicationStream(reader);
         } catch (Exception e) {
             throw new FileValidationException("Parsing of DeliveryPublications failed: " + e.getMessage(), e);
+        } finally {
+            closeQuietly(reader);
         }
     }
 
 
-    Collection<ElasticsearchCommand> fromDeliveryPublicationStructure(PublicationDeliveryStructure deliveryStructure) {
-        List<ElasticsearchCommand> commands = new ArrayList<>();
-        List<ElasticsearchCommand> stopPlaceCommands = null;
-        List<GroupOfStopPlaces> groupOfStopPlaces = null;
-        for (JAXBElement<? extends Common_VersionFrameStructure> frameStructureElmt : deliveryStructure.getDataObjects().getCompositeFrameOrCommonFrame()) {
-            Common_VersionFrameStructure frameStructure = frameStructureElmt.getValue();
-            if (frameStructure instanceof Site_VersionFrameStructure) {
-                Site_VersionFrameStructure siteFrame = (Site_VersionFrameStructure) frameStructure;
-
-                if (siteFrame.getStopPlaces() != null) {
-                    stopPlaceCommands = addStopPlaceCommands(siteFrame.getStopPlaces().getStopPlace());
-                    commands.addAll(stopPlaceCommands);
+    /**
+     * Map a change log of stop places to commands for updating a live index.
+     * <p>
+     * Documents for changed stop places are indexed. Documents that are no longer produced for a changed stop place, either because
+     * the stop place is no longer valid or because it has fewer names than before, are deleted. As the previous number of names is not known,
+     * deletes are issued for alias documents up to maxDocumentsPerStopPlace.
+     * <p>
+     * A change log may hold a child without its parent, or a parent without any of its children. Documents for such stop places would lack
+     * the source, names, categories and popularity given by the rest of the hierarchy and overwrite the documents in the live index, so
+     * they are neither indexed nor deleted but left to the next full update.
+     */
+    public Collection<ElasticsearchCommand> transformChanges(InputStream changeLogStream, int maxDocumentsPerStopPlace) {
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(changeLogStream);
+            Set<String> completeStopPlaceIds = new HashSet<>();
+            Collection<ElasticsearchCommand> commands = fromDeliveryPublicationStream(reader, completeStopPlaceIds);
+
+            // Documents without center point are filtered out before indexing and will not replace existing documents
+            Set<String> indexedIds = commands.stream().map(c -> (PeliasDocument) c.getSource()).filter(d -> d.getCenterPoint() != null)
+                                             .map(PeliasDocument::getSourceId).collect(Collectors.toSet());
+
+            List<ElasticsearchCommand> changeCommands = commands.stream().filter(c -> indexedIds.contains(((PeliasDocument) c.getSource()).getSourceId())).collect(Collectors.toList());
+            for (String stopPlaceId : completeStopPlaceIds) {
+                for (int idx = 0; idx < maxDocumentsPerStopPlace; idx++) {
+                    String documentId = stopPlaceId + (idx > 0 ? "-" + idx : "");
+                    if (!indexedIds.contains(documentId)) {
+                        changeCommands.add(ElasticsearchCommand.peliasDeleteCommand(StopPlaceToPeliasMapper.STOP_PLACE_LAYER, documentId));
+                    }
                 }
-                if (siteFrame.getTopographicPlaces() != null) {
-                    commands.addAll(addTopographicPlaceCommands(siteFrame.getTopographicPlaces().getTopographicPlace()));
+            }
+            return changeCommands;
+        } catch (Exception e) {
+            throw new FileValidationException("Parsing of change log failed: " + e.getMessage(), e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Walk the publication delivery with StAX and unmarshal one StopPlace, TopographicPlace or GroupOfStopPlaces at a time.
+     * <p>
+     * Stop places outside multimodal hierarchies and topographic places are mapped as soon as they are read. Only stop places
+     * taking part in a parent/child hierarchy and the groups of stop places (which need the popularity of all member stops) are kept
+     * until the end of the stream. Children of a parent that was mapped early because it lacks the parent key are mapped standalone.
+     */
+    Collection<ElasticsearchCommand> fromDeliveryPublicationStream(XMLStreamReader reader) throws Exception {
+        return fromDeliveryPublicationStream(reader, null);
+    }
+
+    /**
+     * When completeStopPlaceIds is set the stream is treated as a change log: stop places whose parent or children are missing are skipped,
+     * and the ids of the stop places mapped are collected.
+     */
+    private Collection<ElasticsearchCommand> fromDeliveryPublicationStream(XMLStreamReader reader, Set<String> completeStopPlaceIds) throws Exception {
+        Unmarshaller unmarshaller = PUBLICATION_DELIVERY_CONTEXT.createUnmarshaller();
+
+        StopPlaceToPeliasMapper stopPlaceMapper = new StopPlaceToPeliasMapper(stopPlaceBoostConfiguration);
+        TopographicPlaceToPeliasMapper topographicPlaceMapper = new TopographicPlaceToPeliasMapper(poiBoost, poiFilter);
+
+        List<PeliasDocument> stopPlaceDocuments = new ArrayList<>();
+        List<PeliasDocument> topographicPlaceDocuments = new ArrayList<>();
+        List<StopPlace> hierarchyStopPlaces = new ArrayList<>();
+        Set<String> standaloneStopPlaceIds = new HashSet<>();
+        List<GroupOfStopPlaces> groupOfStopPlaces = new ArrayList<>();
+
+        String container = null;
+        while (reader.hasNext()) {
+            if (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+                reader.next();
+                continue;
+            }
+            String name = reader.getLocalName();
+            if (STOP_PLACES.equals(container) && STOP_PLACE.equals(name)) {
+                StopPlace stopPlace = unmarshaller.unmarshal(reader, StopPlace.class).getValue();
+                if (isPartOfHierarchy(stopPlace)) {
+                    hierarchyStopPlaces.add(stopPlace);
+                } else {
+                    standaloneStopPlaceIds.add(stopPlace.getId());
+                    if (completeStopPlaceIds != null) {
+                        completeStopPlaceIds.add(stopPlace.getId());
+                    }
+                    stopPlaceDocuments.addAll(stopPlaceMapper.toPeliasDocuments(new PlaceHierarchy<>(stopPlace)));
                 }
-                if (siteFrame.getGroupsOfStopPlaces() != null) {
-                    groupOfStopPlaces = siteFrame.getGroupsOfStopPlaces().getGroupOfStopPlaces();
+            } else if (TOPOGRAPHIC_PLACES.equals(container) && TOPOGRAPHIC_PLACE.equals(name)) {
+                TopographicPlace topographicPlace = unmarshaller.unmarshal(reader, TopographicPlace.class).getValue();
+                topographicPlaceDocuments.addAll(topographicPlaceMapper.toPeliasDocuments(new PlaceHierarchy<>(topographicPlace)));
+            } else if (GROUPS_OF_STOP_PLACES.equals(container) && GROUP_OF_STOP_PLACES.equals(name)) {
+                if (gosInclude) {
+                    groupOfStopPlaces.add(unmarshaller.unmarshal(reader, GroupOfStopPlaces.class).getValue());
+                } else {
+                    skipElement(reader);
                 }
+            } else {
+                container = name;
+                reader.next();
             }
         }
 
-        if (gosInclude && groupOfStopPlaces != null) {
+        Set<PlaceHierarchy<StopPlace>> hierarchies = toPlaceHierarchies(hierarchyStopPlaces);
+        for (PlaceHierarchy<StopPlace> hierarchy : hierarchies) {
+            String stopPlaceId = hierarchy.getPlace().getId();
+            if (completeStopPlaceIds != null) {
+                if (hierarchy.getParent() == null && CollectionUtils.isEmpty(hierarchy.getChildren())) {
+                    logger.info("Children of parent stop place {} are not part of change log, leaving it to next full update", stopPlaceId);
+                    continue;
+                }
+                completeStopPlaceIds.add(stopPlaceId);
+            }
+            stopPlaceDocuments.addAll(stopPlaceMapper.toPeliasDocuments(hierarchy));
+        }
+
+        Set<String> hierarchyStopPlaceIds = hierarchies.stream().map(hierarchy -> hierarchy.getPlace().getId()).collect(Collectors.toSet());
+        for (StopPlace stopPlace : hierarchyStopPlaces) {
+            if (hierarchyStopPlaceIds.contains(stopPlace.getId())) {
+                continue;
+            }
+            String parentId = stopPlace.getParentSiteRef().getRef();
+            if (standaloneStopPlaceIds.contains(parentId)) {
+                // Mapped as in a full update, so the documents are the same as those in the live index after the next full update
+                logger.warn("Parent stop place {} is not marked with {}, mapping child stop place {} standalone", parentId, KEY_IS_PARENT_STOP_PLACE, stopPlace.getId());
+                stopPlaceDocuments.addAll(stopPlaceMapper.toPeliasDocuments(new PlaceHierarchy<>(stopPlace)));
+                if (completeStopPlaceIds != null) {
+                    completeStopPlaceIds.add(stopPlace.getId());
+                }
+            } else if (completeStopPlaceIds != null) {
+                logger.info("Parent stop place {} of stop place {} is not part of change log, leaving it to next full update", parentId, stopPlace.getId());
+            }
+        }
+
+        List<ElasticsearchCommand> commands = new ArrayList<>();
+        List<ElasticsearchCommand> stopPlaceCommands = toSortedCommands(stopPlaceDocuments);
+        commands.addAll(stopPlaceCommands);
+        commands.addAll(toSortedCommands(topographicPlaceDocuments));
+
+        if (gosInclude && !groupOfStopPlaces.isEmpty()) {
             commands.addAll(addGroupsOfStopPlacesCommands(groupOfStopPlaces, mapPopularityPerStopPlaceId(stopPlaceCommands)));
         }
 
         return commands;
     }
 
+    /**
+     * Multimodal parents are marked with a key value, children refer to their parent. Both need the rest of the hierarchy to be mapped.
+     */
+    private boolean isPartOfHierarchy(StopPlace stopPlace) {
+        if (stopPlace.getParentSiteRef() != null) {
+            return true;
+        }
+        return stopPlace.getKeyList() != null && stopPlace.getKeyList().getKeyValue().stream()
+                                                         .anyMatch(kv -> KEY_IS_PARENT_STOP_PLACE.equals(kv.getKey()) && Boolean.TRUE.toString().equalsIgnoreCase(kv.getValue()));
+    }
+
+    private List<ElasticsearchCommand> toSortedCommands(List<PeliasDocument> documents) {
+        return documents.stream().filter(Objects::nonNull).sorted(new PeliasDocumentPopularityComparator()).map(p -> ElasticsearchCommand.peliasIndexCommand(p)).collect(Collectors.toList());
+    }
+
+    private void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 0;
+        do {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        } while (depth >= 0);
+        reader.next();
+    }
+
+    private void closeQuietly(XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // Ignore, stream is owned by caller
+            }
+        }
+    }
+
     private Map<String, Long> mapPopularityPerStopPlaceId(List<ElasticsearchCommand> stopPlaceCommands) {
         Map<String, Long> popularityPerStopPlaceId = new HashMap<>();
         if (!CollectionUtils.isEmpty(stopPlaceCommands)) {
@@ -145,26 +315,6 @@ public class DeliveryPublicationStreamToElasticsearchCommands {
         return (long) popularity;
     }
 
-    private List<ElasticsearchCommand> addTopographicPlaceCommands(List<TopographicPlace> places) {
-        if (!CollectionUtils.isEmpty(places)) {
-            TopographicPlaceToPeliasMapper mapper = new TopographicPlaceToPeliasMapper(poiBoost, poiFilter);
-            return places.stream().map(p -> mapper.toPeliasDocuments(new PlaceHierarchy<TopographicPlace>(p))).flatMap(documents -> documents.stream()).sorted(new PeliasDocumentPopularityComparator()).filter(d -> d != null).map(p -> ElasticsearchCommand.peliasIndexCommand(p)).collect(Collectors.toList());
-        }
-        return new ArrayList<>();
-    }
-
-    private List<ElasticsearchCommand> addStopPlaceCommands(List<StopPlace> places) {
-        if (!CollectionUtils.isEmpty(places)) {
-            StopPlaceToPeliasMapper mapper = new StopPlaceToPeliasMapper(stopPlaceBoostConfiguration);
-
-            Set<PlaceHierarchy<StopPlace>> stopPlaceHierarchies = toPlaceHierarchies(places);
-
-            return stopPlaceHierarchies.stream().map(p -> mapper.toPeliasDocuments(p)).flatMap(documents -> documents.stream()).sorted(new PeliasDocumentPopularityComparator()).map(p -> ElasticsearchCommand.peliasIndexCommand(p)).collect(Collectors.toList());
-        }
-        return new ArrayList<>();
-    }
-
-
     private void expandStopPlaceHierarchies(Collection<PlaceHierarchy<StopPlace>> hierarchies, Set<PlaceHierarchy<StopPlace>> target) {
         if (hierarchies != null) {
             for (PlaceHierarchy<StopPlace> stopPlacePlaceHierarchy : hierarchies) {
@@ -198,11 +348,19 @@ public class DeliveryPublicationStreamToElasticsearchCommands {
     }
 
 
-    private PublicationDeliveryStructure unmarshall(InputStream in) throws Exception {
-        JAXBContext publicationDeliveryContext = newInstance(PublicationDeliveryStructure.class);
-        Unmarshaller unmarshaller = publicationDeliveryContext.createUnmarshaller();
-        JAXBElement<PublicationDeliveryStructure> jaxbElement = unmarshaller.unmarshal(new StreamSource(in), PublicationDeliveryStructure.class);
-        return jaxbElement.getValue();
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private static JAXBContext createContext() {
+        try {
+            return JAXBContext.newInstance(PublicationDeliveryStructure.class);
+        } catch (JAXBException e) {
+            throw new RuntimeException("Failed to create JAXBContext for PublicationDelivery: " + e.getMessage(), e);
+        }
     }
 
     private class PeliasDocumentPopularityComparator implements Comparator<PeliasDocument> {
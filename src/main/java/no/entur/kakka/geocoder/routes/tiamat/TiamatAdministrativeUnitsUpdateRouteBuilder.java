@@ -20,21 +20,25 @@ package no.entur.kakka.geocoder.routes.tiamat;
 import no.entur.kakka.geocoder.BaseRouteBuilder;
 import no.entur.kakka.geocoder.GeoCoderConstants;
 import no.entur.kakka.geocoder.netex.TopographicPlaceConverter;
+import no.entur.kakka.geocoder.netex.TopographicPlaceNetexRequestEntity;
+import no.entur.kakka.geocoder.netex.TopographicPlaceReader;
 import no.entur.kakka.geocoder.netex.sosi.SosiTopographicPlaceReader;
 import no.entur.kakka.geocoder.routes.control.GeoCoderTaskType;
 import no.entur.kakka.geocoder.sosi.SosiElementWrapperFactory;
-import no.entur.kakka.routes.file.ZipFileUtils;
 import no.entur.kakka.routes.status.JobEvent;
 import no.entur.kakka.security.TokenService;
 import no.entur.kakka.services.BlobStoreService;
 import org.apache.camel.Exchange;
 import org.apache.camel.LoggingLevel;
-import org.apache.commons.io.FileUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
 import javax.ws.rs.core.MediaType;
 import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 //@Component
 public class TiamatAdministrativeUnitsUpdateRouteBuilder extends BaseRouteBuilder {
@@ -54,6 +58,9 @@ public class TiamatAdministrativeUnitsUpdateRouteBuilder extends BaseRouteBuilde
     @Value("${tiamat.administrative.units.update.directory:files/tiamat/adminUnits}")
     private String localWorkingDirectory;
 
+    @Value("${tiamat.netex.stream.upload:false}")
+    private boolean streamUpload;
+
     @Autowired
     private TopographicPlaceConverter topographicPlaceConverter;
 
@@ -98,13 +105,19 @@ public class TiamatAdministrativeUnitsUpdateRouteBuilder extends BaseRouteBuilde
                 .log(LoggingLevel.DEBUG, getClass().getName(), "Mapping latest administrative units to Netex ...")
                 .process(e -> {
 
-                    blobStore.listBlobsInFolder(blobStoreSubdirectoryForKartverket + "/administrativeUnits", e).getFiles().stream()
+                    // Archives are streamed by the reader, instead of being extracted to disk first
+                    List<Supplier<InputStream>> archives = blobStore.listBlobsInFolder(blobStoreSubdirectoryForKartverket + "/administrativeUnits", e).getFiles().stream()
                             .filter(blob -> blob.getName().endsWith(".zip"))
-                            .forEach(blob -> ZipFileUtils.unzipFile(blobStore.getBlob(blob.getName(), e), localWorkingDirectory));
-                    topographicPlaceConverter.toNetexFile(
-                            new SosiTopographicPlaceReader(wrapperFactory, FileUtils.listFiles(new File(localWorkingDirectory), new String[]{"sos"}, true)), localWorkingDirectory + "/admin-units-netex.xml");
-                    new File(localWorkingDirectory).delete();
-                    e.getIn().setBody(new File(localWorkingDirectory + "/admin-units-netex.xml"));
+                            .map(blob -> (Supplier<InputStream>) () -> blobStore.getBlob(blob.getName(), e))
+                            .collect(Collectors.toList());
+                    TopographicPlaceReader reader = SosiTopographicPlaceReader.fromZipArchives(wrapperFactory, archives);
+                    if (streamUpload) {
+                        // Converted while posting to Tiamat
+                        e.getIn().setBody(new TopographicPlaceNetexRequestEntity(topographicPlaceConverter, reader));
+                    } else {
+                        topographicPlaceConverter.toNetexFile(reader, localWorkingDirectory + "/admin-units-netex.xml");
+                        e.getIn().setBody(new File(localWorkingDirectory + "/admin-units-netex.xml"));
+                    }
                 })
                 .routeId("tiamat-map-admin-units-sosi-to-netex");
 
@@ -58,6 +58,9 @@ public class TiamatChangeLogExportRouteBuilder extends BaseRouteBuilder {
     @Value("${tiamat.change.log.per.page:200000}")
     private int maxStopsPerPage;
 
+    @Value("${pelias.change.log.update.enabled:false}")
+    private boolean updatePeliasFromChangeLog;
+
     public static final String DATE_TIME_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSSXXXX";
 
     private static DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(DATE_TIME_PATTERN);
@@ -92,6 +95,10 @@ public class TiamatChangeLogExportRouteBuilder extends BaseRouteBuilder {
                 .to("direct:updateEtcdStateForExport")
                 .log(LoggingLevel.INFO, "Finished Tiamat publish export: ${exchangeProperty." + Constants.TIAMAT_EXPORT_TASKS + ".currentTask.name}. Uploaded new file ${header." + Constants.FILE_HANDLE + "}")
 
+                .filter(constant(updatePeliasFromChangeLog))
+                .to("direct:updatePeliasFromTiamatChangeLog")
+                .end()
+
                 .end()
                 .process(e -> JobEvent.systemJobBuilder(e).state(JobEvent.State.OK).build()).to("direct:updateStatus")
                 .routeId("tiamat-publish-export-process-changelog");
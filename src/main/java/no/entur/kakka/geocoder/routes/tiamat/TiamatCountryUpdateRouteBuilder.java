@@ -21,6 +21,8 @@ import no.entur.kakka.domain.BlobStoreFiles;
 import no.entur.kakka.geocoder.BaseRouteBuilder;
 import no.entur.kakka.geocoder.GeoCoderConstants;
 import no.entur.kakka.geocoder.netex.TopographicPlaceConverter;
+import no.entur.kakka.geocoder.netex.TopographicPlaceNetexRequestEntity;
+import no.entur.kakka.geocoder.netex.TopographicPlaceReader;
 import no.entur.kakka.geocoder.netex.geojson.GeoJsonSingleTopographicPlaceReader;
 import no.entur.kakka.geocoder.geojson.GeojsonFeatureWrapperFactory;
 import no.entur.kakka.services.BlobStoreService;
@@ -51,6 +53,9 @@ public class TiamatCountryUpdateRouteBuilder extends BaseRouteBuilder {
     @Value("${tiamat.neighbouring.countries.update.directory:files/tiamat/countries}")
     private String localWorkingDirectory;
 
+    @Value("${tiamat.netex.stream.upload:false}")
+    private boolean streamUpload;
+
     @Autowired
     private TopographicPlaceConverter topographicPlaceConverter;
 
@@ -94,10 +99,16 @@ public class TiamatCountryUpdateRouteBuilder extends BaseRouteBuilder {
 
         from("direct:mapNeighbouringCountriesToNetex")
                 .log(LoggingLevel.DEBUG, getClass().getName(), "Mapping latest neighbouring countries to Netex ...")
-                .process(e -> topographicPlaceConverter.toNetexFile(
-                        new GeoJsonSingleTopographicPlaceReader(wrapperFactory, getGeojsonCountryFiles()),
-                        localWorkingDirectory + "/neighbouring-countries-netex.xml"))
-                .process(e -> e.getIn().setBody(new File(localWorkingDirectory + "/neighbouring-countries-netex.xml")))
+                .process(e -> {
+                    TopographicPlaceReader reader = new GeoJsonSingleTopographicPlaceReader(wrapperFactory, getGeojsonCountryFiles());
+                    if (streamUpload) {
+                        // Converted while posting to Tiamat
+                        e.getIn().setBody(new TopographicPlaceNetexRequestEntity(topographicPlaceConverter, reader));
+                    } else {
+                        topographicPlaceConverter.toNetexFile(reader, localWorkingDirectory + "/neighbouring-countries-netex.xml");
+                        e.getIn().setBody(new File(localWorkingDirectory + "/neighbouring-countries-netex.xml"));
+                    }
+                })
                 .routeId("tiamat-map-neighbouring-countries-to-netex");
 
         from("direct:updateNeighbouringCountriesInTiamat")
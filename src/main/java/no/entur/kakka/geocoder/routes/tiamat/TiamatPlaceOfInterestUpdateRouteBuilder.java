@@ -20,6 +20,7 @@ import no.entur.kakka.Constants;
 import no.entur.kakka.geocoder.BaseRouteBuilder;
 import no.entur.kakka.routes.status.JobEvent;
 import no.entur.kakka.geocoder.netex.TopographicPlaceConverter;
+import no.entur.kakka.geocoder.netex.TopographicPlaceNetexRequestEntity;
 import no.entur.kakka.geocoder.netex.TopographicPlaceReader;
 import no.entur.kakka.geocoder.netex.pbf.PbfTopographicPlaceReader;
 import no.entur.kakka.geocoder.routes.control.GeoCoderTaskType;
@@ -34,6 +35,7 @@ import org.springframework.stereotype.Component;
 import javax.ws.rs.core.MediaType;
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import static no.entur.kakka.geocoder.GeoCoderConstants.*;
 
@@ -67,6 +69,15 @@ public class TiamatPlaceOfInterestUpdateRouteBuilder extends BaseRouteBuilder {
     @Value("#{'${osm.poi.filter:}'.split(',')}")
     private List<String> poiFilter;
 
+    @Value("${tiamat.netex.stream.upload:false}")
+    private boolean streamUpload;
+
+    @Value("${tiamat.poi.osm.single.pass:true}")
+    private boolean singlePass;
+
+    @Value("${tiamat.poi.osm.decoder.threads:8}")
+    private int decoderThreads;
+
     @Value("${tiamat.poi.update.enabled:true}")
     private boolean routeEnabled;
 
@@ -79,10 +90,15 @@ public class TiamatPlaceOfInterestUpdateRouteBuilder extends BaseRouteBuilder {
     @Autowired
     private TokenService tokenService;
 
+    private ExecutorService decoderExecutorService;
+
     @Override
     public void configure() throws Exception {
         super.configure();
 
+        // Pool for inflating and decoding OSM PBF blocks. Blocks are still handled in file order by the reading thread.
+        decoderExecutorService = getContext().getExecutorServiceManager().newFixedThreadPool(this, "OsmBlockDecoder", decoderThreads);
+
         singletonFrom("quartz2://kakka/tiamatPlaceOfInterestUpdate?cron=" + cronSchedule + "&trigger.timeZone=Europe/Oslo")
                 .autoStartup("{{tiamat.poi.update.autoStartup:false}}")
                 .filter(e -> isSingletonRouteActive(e.getFromRouteId()))
@@ -129,8 +145,15 @@ public class TiamatPlaceOfInterestUpdateRouteBuilder extends BaseRouteBuilder {
 
         from("direct:mapPlaceOfInterestToNetex")
                 .log(LoggingLevel.DEBUG, getClass().getName(), "Mapping latest place of interest to Netex ...")
-                .process(e -> topographicPlaceConverter.toNetexFile(createTopographicPlaceReader(e), localWorkingDirectory + "/poi-netex.xml"))
-                .process(e -> e.getIn().setBody(new File(localWorkingDirectory + "/poi-netex.xml")))
+                .process(e -> {
+                    if (streamUpload) {
+                        // Converted while posting to Tiamat
+                        e.getIn().setBody(new TopographicPlaceNetexRequestEntity(topographicPlaceConverter, createTopographicPlaceReader(e)));
+                    } else {
+                        topographicPlaceConverter.toNetexFile(createTopographicPlaceReader(e), localWorkingDirectory + "/poi-netex.xml");
+                        e.getIn().setBody(new File(localWorkingDirectory + "/poi-netex.xml"));
+                    }
+                })
                 .routeId("tiamat-map-poi-osm-to-netex");
 
         from("direct:updatePlaceOfInterestInTiamat")
@@ -149,7 +172,12 @@ public class TiamatPlaceOfInterestUpdateRouteBuilder extends BaseRouteBuilder {
     }
 
     private TopographicPlaceReader createTopographicPlaceReader(Exchange e) {
-        return new PbfTopographicPlaceReader(poiFilter, IanaCountryTldEnumeration.NO, new File(localWorkingDirectory + "/" + osmFileName));
+        PbfTopographicPlaceReader reader = new PbfTopographicPlaceReader(poiFilter, IanaCountryTldEnumeration.NO, new File(localWorkingDirectory + "/" + osmFileName))
+                                                   .withParallelDecoding(decoderExecutorService, decoderThreads * 2);
+        if (singlePass) {
+            reader.withSinglePass(new File(localWorkingDirectory));
+        }
+        return reader;
     }
 
 }
@@ -20,10 +20,19 @@ package no.entur.kakka.geocoder.services;
 import com.vividsolutions.jts.geom.Point;
 import no.entur.kakka.geocoder.netex.TopographicPlaceAdapter;
 
+import java.util.Collection;
+
 public interface AdminUnitRepository {
 
 	String getAdminUnitName(String id);
 
 	TopographicPlaceAdapter getLocality(Point point);
 
+	LocalitySpatialIndex.LookupStatistics getLookupStatistics();
+
+	/**
+	 * All admin units the repository was built from, so that they can be indexed without reading the source data again.
+	 */
+	Collection<TopographicPlaceAdapter> getAdminUnits();
+
 }
@@ -19,35 +19,55 @@ package no.entur.kakka.geocoder.services;
 import com.google.cloud.storage.Storage;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.Point;
 import no.entur.kakka.geocoder.netex.TopographicPlaceAdapter;
 import no.entur.kakka.geocoder.sosi.SosiElementWrapperFactory;
 import no.entur.kakka.geocoder.sosi.SosiTopographicPlaceAdapterReader;
 import no.entur.kakka.repository.BlobStoreRepository;
 import no.entur.kakka.domain.BlobStoreFiles;
-import no.entur.kakka.routes.file.ZipFileUtils;
-import org.apache.commons.io.FileUtils;
+import no.entur.kakka.routes.file.ZipEntryIterator;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Service
 public class AdminUnitRepositoryBuilder {
+    private static final Logger logger = LoggerFactory.getLogger(AdminUnitRepositoryBuilder.class);
+
     @Value("${admin.units.cache.max.size:30000}")
     private Integer cacheMaxSize;
 
     @Value("${kartverket.blobstore.subdirectory:kartverket}")
     private String blobStoreSubdirectoryForKartverket;
 
-    @Value("${pelias.download.directory:files/adminUnitCache}")
-    private String localWorkingDirectory;
+    @Value("${admin.units.locality.cell.precision:6}")
+    private int localityCellPrecision;
+
+    @Value("${admin.units.locality.cell.cache.max.size:200000}")
+    private long localityCellCacheMaxSize;
+
+    @Value("${admin.units.snapshot.enabled:true}")
+    private boolean snapshotEnabled;
+
+    @Value("${admin.units.snapshot.blobstore.subdirectory:kartverket/adminUnitSnapshots}")
+    private String blobStoreSubdirectoryForSnapshots;
 
     @Autowired
     BlobStoreRepository repository;
@@ -67,21 +87,78 @@ public class AdminUnitRepositoryBuilder {
         repository.setContainerName(containerName);
     }
 
+    /**
+     * Build repository from a snapshot of the admin units if one exists for the current admin unit blobs, or else from the blobs.
+     * A snapshot is written after building from the blobs, replacing snapshots for older blobs.
+     */
     public AdminUnitRepository build() {
+        BlobStoreFiles blobs = repository.listBlobs(blobStoreSubdirectoryForKartverket + "/administrativeUnits");
+        String snapshotName = snapshotEnabled ? getSnapshotName(blobs) : null;
+
         RefreshCache refreshJob = new RefreshCache();
-        refreshJob.buildNewCache();
-        return new CacheAdminUnitRepository(refreshJob.tmpCache, refreshJob.localities);
+        if (snapshotName == null || !refreshJob.restoreFromSnapshot(snapshotName)) {
+            refreshJob.buildNewCache(blobs);
+            if (snapshotName != null) {
+                writeSnapshot(snapshotName, refreshJob.adminUnits);
+            }
+        }
+        return new CacheAdminUnitRepository(refreshJob.tmpCache, refreshJob.adminUnits);
+    }
+
+    /**
+     * Snapshots are named by the digests of all admin unit blobs and the snapshot format version.
+     */
+    private String getSnapshotName(BlobStoreFiles blobs) {
+        List<BlobStoreFiles.File> inputs = blobs.getFiles().stream().filter(blob -> isAdminUnitBlob(blob.getName()))
+                                                   .sorted(Comparator.comparing(BlobStoreFiles.File::getName)).collect(Collectors.toList());
+        if (inputs.isEmpty() || inputs.stream().anyMatch(blob -> blob.getMd5() == null)) {
+            logger.info("Not using admin unit snapshot, as digests are missing for admin unit blobs");
+            return null;
+        }
+        String key = DigestUtils.sha256Hex(inputs.stream().map(blob -> blob.getName() + "=" + blob.getMd5()).collect(Collectors.joining("\n")));
+        return blobStoreSubdirectoryForSnapshots + "/adminUnits-v" + AdminUnitSnapshot.FORMAT_VERSION + "-" + key + ".bin";
+    }
+
+    private boolean isAdminUnitBlob(String name) {
+        return name.endsWith(".zip") || name.endsWith(".sos");
+    }
+
+    private void writeSnapshot(String snapshotName, List<TopographicPlaceAdapter> adminUnits) {
+        File tmpFile = null;
+        try {
+            tmpFile = File.createTempFile("adminUnits", ".bin");
+            try (OutputStream out = new FileOutputStream(tmpFile)) {
+                AdminUnitSnapshot.write(adminUnits, out);
+            }
+            try (InputStream in = new FileInputStream(tmpFile)) {
+                repository.uploadBlob(snapshotName, in, false);
+            }
+            repository.listBlobs(blobStoreSubdirectoryForSnapshots + "/").getFiles().stream()
+                    .filter(blob -> !blob.getName().equals(snapshotName)).forEach(blob -> repository.delete(blob.getName()));
+            logger.info("Wrote admin unit snapshot {} with {} admin units ({} bytes)", snapshotName, adminUnits.size(), tmpFile.length());
+        } catch (IOException | RuntimeException e) {
+            // The snapshot only saves time for later builds, so this build does not fail because of it
+            logger.warn("Failed to write admin unit snapshot: " + e.getMessage(), e);
+        } finally {
+            if (tmpFile != null) {
+                tmpFile.delete();
+            }
+        }
     }
 
     private class CacheAdminUnitRepository implements AdminUnitRepository {
 
         private Cache<String, String> idCache;
 
-        private List<TopographicPlaceAdapter> localities;
+        private LocalitySpatialIndex localityIndex;
+
+        private List<TopographicPlaceAdapter> adminUnits;
 
-        public CacheAdminUnitRepository(Cache<String, String> idCache, List<TopographicPlaceAdapter> localities) {
+        public CacheAdminUnitRepository(Cache<String, String> idCache, List<TopographicPlaceAdapter> adminUnits) {
             this.idCache = idCache;
-            this.localities = localities;
+            this.adminUnits = Collections.unmodifiableList(adminUnits);
+            this.localityIndex = new LocalitySpatialIndex(adminUnits.stream().filter(au -> au.getType() == TopographicPlaceAdapter.Type.LOCALITY).collect(Collectors.toList()),
+                                                                 localityCellPrecision, localityCellCacheMaxSize);
         }
 
         @Override
@@ -91,17 +168,17 @@ public class AdminUnitRepositoryBuilder {
 
         @Override
         public TopographicPlaceAdapter getLocality(Point point) {
-            if (localities == null) {
-                return null;
-            }
-            for (TopographicPlaceAdapter locality : localities) {
-                Geometry geometry = locality.getDefaultGeometry();
+            return localityIndex.getLocality(point);
+        }
 
-                if (geometry != null && geometry.covers(point)) {
-                    return locality;
-                }
-            }
-            return null;
+        @Override
+        public LocalitySpatialIndex.LookupStatistics getLookupStatistics() {
+            return localityIndex.getStatistics();
+        }
+
+        @Override
+        public Collection<TopographicPlaceAdapter> getAdminUnits() {
+            return adminUnits;
         }
     }
 
@@ -110,33 +187,51 @@ public class AdminUnitRepositoryBuilder {
 
         private Cache<String, String> tmpCache;
 
-        private List<TopographicPlaceAdapter> localities;
-
-        public void buildNewCache() {
-            BlobStoreFiles blobs = repository.listBlobs(blobStoreSubdirectoryForKartverket + "/administrativeUnits");
+        private List<TopographicPlaceAdapter> adminUnits;
 
-            localities = new ArrayList<>();
+        public void buildNewCache(BlobStoreFiles blobs) {
+            adminUnits = new ArrayList<>();
             tmpCache = CacheBuilder.newBuilder().maximumSize(cacheMaxSize).build();
 
             for (BlobStoreFiles.File blob : blobs.getFiles()) {
                 if (blob.getName().endsWith(".zip")) {
-                    ZipFileUtils.unzipFile(repository.getBlob(blob.getName()), localWorkingDirectory);
-                } else if (blob.getName().endsWith(".sos")) {
-                    try {
-                        FileUtils.copyInputStreamToFile(repository.getBlob(blob.getName()), new File(localWorkingDirectory + "/" + blob.getName()));
+                    try (ZipEntryIterator entries = new ZipEntryIterator(repository.getBlob(blob.getName()), "sos")) {
+                        ZipEntryIterator.Entry entry;
+                        while ((entry = entries.nextEntry()) != null) {
+                            readAdminUnits(entry.getInputStream());
+                        }
                     } catch (IOException ioe) {
-                        throw new RuntimeException("Failed to download admin units file: " + ioe.getMessage(), ioe);
+                        throw new RuntimeException("Failed to read admin units archive: " + ioe.getMessage(), ioe);
                     }
+                } else if (blob.getName().endsWith(".sos")) {
+                    readAdminUnits(repository.getBlob(blob.getName()));
                 }
             }
-            FileUtils.listFiles(new File(localWorkingDirectory), new String[]{"sos"}, true).stream().forEach(f -> new SosiTopographicPlaceAdapterReader(sosiElementWrapperFactory, f).read().forEach(au -> addAdminUnit(au)));
-            new File(localWorkingDirectory).delete();
         }
 
-        private void addAdminUnit(TopographicPlaceAdapter wrapper) {
-            if (wrapper.getType() == TopographicPlaceAdapter.Type.LOCALITY) {
-                localities.add(wrapper);
+        public boolean restoreFromSnapshot(String snapshotName) {
+            if (repository.listBlobs(snapshotName).getFiles().stream().noneMatch(blob -> blob.getName().equals(snapshotName))) {
+                logger.info("No admin unit snapshot {} for current admin unit blobs", snapshotName);
+                return false;
             }
+            try (InputStream in = repository.getBlob(snapshotName)) {
+                adminUnits = new ArrayList<>();
+                tmpCache = CacheBuilder.newBuilder().maximumSize(cacheMaxSize).build();
+                AdminUnitSnapshot.read(in).forEach(au -> addAdminUnit(au));
+                logger.info("Restored {} admin units from snapshot {}", adminUnits.size(), snapshotName);
+                return true;
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Failed to read admin unit snapshot, building from admin unit blobs instead: " + e.getMessage(), e);
+                return false;
+            }
+        }
+
+        private void readAdminUnits(InputStream sosiInputStream) {
+            new SosiTopographicPlaceAdapterReader(sosiElementWrapperFactory, sosiInputStream).read().forEach(au -> addAdminUnit(au));
+        }
+
+        private void addAdminUnit(TopographicPlaceAdapter wrapper) {
+            adminUnits.add(wrapper);
             tmpCache.put(wrapper.getId(), wrapper.getName());
         }
     }
@@ -0,0 +1,256 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.geocoder.services;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.io.WKBWriter;
+import no.entur.kakka.geocoder.netex.TopographicPlaceAdapter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compact binary snapshot of the admin units an {@link AdminUnitRepository} is built from, so that the repository can be restored
+ * without downloading and parsing the SOSI source files.
+ * <p>
+ * Admin units are written in repository order with their attributes and their geometry as WKB. The id to name table and the locality
+ * index are derived from the admin units when restoring, and the order is kept so that the index resolves overlaps as the original.
+ */
+public class AdminUnitSnapshot {
+
+    /**
+     * Part of the snapshot name, so that snapshots in an older format are never read.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x4B41_5553;
+
+    private AdminUnitSnapshot() {
+    }
+
+    public static void write(Collection<TopographicPlaceAdapter> adminUnits, OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(outputStream)));
+        WKBWriter wkbWriter = new WKBWriter();
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(adminUnits.size());
+        for (TopographicPlaceAdapter adminUnit : adminUnits) {
+            out.writeByte(adminUnit.getType().ordinal());
+            out.writeBoolean(adminUnit.isValid());
+            writeString(out, adminUnit.getId());
+            writeString(out, adminUnit.getIsoCode());
+            writeString(out, adminUnit.getParentId());
+            writeString(out, adminUnit.getName());
+            writeString(out, adminUnit.getCountryRef());
+            writeStrings(out, adminUnit.getCategories());
+            writeNames(out, adminUnit.getAlternativeNames());
+            Geometry geometry = adminUnit.getDefaultGeometry();
+            if (geometry == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] wkb = wkbWriter.write(geometry);
+                out.writeInt(wkb.length);
+                out.write(wkb);
+            }
+        }
+        out.flush();
+        out.close();
+    }
+
+    public static List<TopographicPlaceAdapter> read(InputStream inputStream) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(inputStream)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an admin unit snapshot");
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported admin unit snapshot version: " + version);
+            }
+            TopographicPlaceAdapter.Type[] types = TopographicPlaceAdapter.Type.values();
+            WKBReader wkbReader = new WKBReader();
+            int count = in.readInt();
+            List<TopographicPlaceAdapter> adminUnits = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                SnapshotAdminUnit adminUnit = new SnapshotAdminUnit();
+                adminUnit.type = types[in.readUnsignedByte()];
+                adminUnit.valid = in.readBoolean();
+                adminUnit.id = readString(in);
+                adminUnit.isoCode = readString(in);
+                adminUnit.parentId = readString(in);
+                adminUnit.name = readString(in);
+                adminUnit.countryRef = readString(in);
+                adminUnit.categories = readStrings(in);
+                adminUnit.alternativeNames = readNames(in);
+                int wkbLength = in.readInt();
+                if (wkbLength >= 0) {
+                    byte[] wkb = new byte[wkbLength];
+                    in.readFully(wkb);
+                    adminUnit.geometry = wkbReader.read(wkb);
+                }
+                adminUnits.add(adminUnit);
+            }
+            return adminUnits;
+        } catch (ParseException pe) {
+            throw new IOException("Invalid geometry in admin unit snapshot: " + pe.getMessage(), pe);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values == null ? -1 : values.size());
+        if (values != null) {
+            for (String value : values) {
+                writeString(out, value);
+            }
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    private static void writeNames(DataOutputStream out, Map<String, String> names) throws IOException {
+        out.writeInt(names == null ? -1 : names.size());
+        if (names != null) {
+            for (Map.Entry<String, String> name : names.entrySet()) {
+                writeString(out, name.getKey());
+                writeString(out, name.getValue());
+            }
+        }
+    }
+
+    private static Map<String, String> readNames(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        Map<String, String> names = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            names.put(readString(in), readString(in));
+        }
+        return names;
+    }
+
+    /**
+     * Admin unit restored from a snapshot, with all values read up front.
+     */
+    private static class SnapshotAdminUnit implements TopographicPlaceAdapter {
+
+        private Type type;
+
+        private boolean valid;
+
+        private String id;
+
+        private String isoCode;
+
+        private String parentId;
+
+        private String name;
+
+        private String countryRef;
+
+        private List<String> categories;
+
+        private Map<String, String> alternativeNames;
+
+        private Geometry geometry;
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getIsoCode() {
+            return isoCode;
+        }
+
+        @Override
+        public String getParentId() {
+            return parentId;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Type getType() {
+            return type;
+        }
+
+        @Override
+        public Geometry getDefaultGeometry() {
+            return geometry;
+        }
+
+        @Override
+        public Map<String, String> getAlternativeNames() {
+            return alternativeNames;
+        }
+
+        @Override
+        public String getCountryRef() {
+            return countryRef;
+        }
+
+        @Override
+        public List<String> getCategories() {
+            return categories;
+        }
+
+        @Override
+        public boolean isValid() {
+            return valid;
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package no.entur.kakka.geocoder.services;
 
 import no.entur.kakka.Constants;
+import no.entur.kakka.domain.DownloadedFile;
 import no.entur.kakka.exceptions.KakkaException;
 import no.jskdata.DefaultReceiver;
 import no.jskdata.Downloader;
@@ -24,6 +25,8 @@ import no.jskdata.GeoNorgeDownloadAPI;
 import no.jskdata.KartverketDownload;
 import org.apache.camel.Exchange;
 import org.apache.camel.Header;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -34,12 +37,18 @@ import org.springframework.stereotype.Service;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 @Service
 public class KartverketService {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
     @Value("${kartverket.username}")
     private String username;
@@ -50,34 +59,24 @@ public class KartverketService {
     @Value("${kartverket.file.min.bytes:1000}")
     private int minBytes;
 
-    public List<File> downloadFiles(@Header(value = Constants.KARTVERKET_DATASETID) String dataSetId,
-                                           @Header(value = Constants.KARTVERKET_FORMAT) String format,
-                                           @Header(value = Exchange.FILE_PARENT) String localDownloadDir) {
+    public List<DownloadedFile> downloadFiles(@Header(value = Constants.KARTVERKET_DATASETID) String dataSetId,
+                                                     @Header(value = Constants.KARTVERKET_FORMAT) String format,
+                                                     @Header(value = Exchange.FILE_PARENT) String localDownloadDir) {
         Downloader kd = getDownloader(dataSetId, format);
 
         return downloadFilesInternal(dataSetId, kd, localDownloadDir);
     }
 
 
-    private List<File> downloadFilesInternal(String dataSetId, Downloader kd, String localDownloadDir) {
-        List<File> files = new ArrayList<>();
+    private List<DownloadedFile> downloadFilesInternal(String dataSetId, Downloader kd, String localDownloadDir) {
+        List<DownloadedFile> files = new ArrayList<>();
         try {
             kd.dataset(dataSetId);
             kd.download(new DefaultReceiver() {
 
                 @Override
                 public void receive(String fileName, InputStream in) throws IOException {
-                    File file = new File(localDownloadDir + "/" + fileName);
-
-                    byte[] content = IOUtils.toByteArray(in);
-                    if (minBytes > 0 && content.length < minBytes) {
-
-                        logger.warn("Got too small file from kartverket, assuming it is an error message: " + new String(content));
-                        throw new KakkaException("File content fetched from Kartverket was less than accepted minimum. Probably error message. Filename: " + fileName);
-                    }
-
-                    FileUtils.writeByteArrayToFile(file, content);
-                    files.add(file);
+                    files.add(writeToFile(fileName, in, localDownloadDir));
                 }
             });
         } catch (IOException ioException) {
@@ -86,6 +85,27 @@ public class KartverketService {
         return files;
     }
 
+    /**
+     * Write downloaded content to file while counting bytes and computing the MD5 digest, so that neither the content has to be held in
+     * memory nor the file has to be read again.
+     */
+    DownloadedFile writeToFile(String fileName, InputStream in, String localDownloadDir) throws IOException {
+        File file = new File(localDownloadDir + "/" + fileName);
+        MessageDigest md5 = DigestUtils.getMd5Digest();
+        long size;
+        try (OutputStream out = FileUtils.openOutputStream(file)) {
+            size = IOUtils.copyLarge(new DigestInputStream(in, md5), out, new byte[BUFFER_SIZE]);
+        }
+
+        if (minBytes > 0 && size < minBytes) {
+            String content = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+            FileUtils.deleteQuietly(file);
+            logger.warn("Got too small file from kartverket, assuming it is an error message: " + content);
+            throw new KakkaException("File content fetched from Kartverket was less than accepted minimum. Probably error message. Filename: " + fileName);
+        }
+        return new DownloadedFile(file, Hex.encodeHexString(md5.digest()), size);
+    }
+
     Downloader getDownloader(String dataSetId, String format) {
         Downloader kd;
         if (isUUID(dataSetId)) {
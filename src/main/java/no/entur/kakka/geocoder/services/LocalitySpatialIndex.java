@@ -0,0 +1,284 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.services;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.index.strtree.STRtree;
+import no.entur.kakka.geocoder.netex.TopographicPlaceAdapter;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spatial index for reverse lookup of localities by point.
+ * <p>
+ * Locality polygons are indexed by envelope in an STR-tree built once. Each lookup queries the tree for candidates and
+ * only tests the candidates with a prepared geometry. Where polygons overlap the locality added first wins, as for a linear scan.
+ * <p>
+ * Optionally lookups are memoised per grid cell, with the same cells as geohashes of the configured precision. The first lookup in a cell
+ * resolves the whole cell. Cells inside a single locality or outside all localities are then answered from the cache, while only
+ * lookups in cells crossing a border are tested against the polygons. The number of cached cells is bounded, least recently used cells
+ * are evicted first.
+ */
+public class LocalitySpatialIndex {
+
+    /**
+     * Max geohash precision, 60 bits.
+     */
+    public static final int MAX_CELL_PRECISION = 12;
+
+    private static final CellLocality OUTSIDE_CELL = new CellLocality(null);
+
+    private static final CellLocality BORDER_CELL = new CellLocality(null);
+
+    private final STRtree tree = new STRtree();
+
+    private final LookupStatistics statistics = new LookupStatistics();
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    private final Cache<Long, CellLocality> cellCache;
+
+    private final int lonBits;
+
+    private final int latBits;
+
+    private int size;
+
+    public LocalitySpatialIndex(Iterable<TopographicPlaceAdapter> localities) {
+        this(localities, 0, 0);
+    }
+
+    /**
+     * @param cellPrecision  geohash precision (number of characters) of cells lookups are memoised for, 0 to disable memoisation
+     * @param maxCachedCells max number of cells to keep in the cache
+     */
+    public LocalitySpatialIndex(Iterable<TopographicPlaceAdapter> localities, int cellPrecision, long maxCachedCells) {
+        for (TopographicPlaceAdapter locality : localities) {
+            Geometry geometry = locality.getDefaultGeometry();
+            if (geometry != null && !geometry.isEmpty()) {
+                tree.insert(geometry.getEnvelopeInternal(), new IndexedLocality(size++, locality, PreparedGeometryFactory.prepare(geometry)));
+            }
+        }
+        // Build eagerly, as lazy build on first query is not safe for concurrent readers
+        tree.build();
+
+        if (cellPrecision > 0 && maxCachedCells > 0) {
+            int bits = 5 * Math.min(cellPrecision, MAX_CELL_PRECISION);
+            lonBits = (bits + 1) / 2;
+            latBits = bits / 2;
+            cellCache = CacheBuilder.newBuilder().maximumSize(maxCachedCells).build();
+        } else {
+            lonBits = 0;
+            latBits = 0;
+            cellCache = null;
+        }
+    }
+
+    public TopographicPlaceAdapter getLocality(Point point) {
+        statistics.lookups.incrementAndGet();
+        if (size == 0) {
+            return null;
+        }
+
+        if (cellCache != null && isLonLat(point.getX(), point.getY())) {
+            long cell = getCell(point.getX(), point.getY());
+            CellLocality cellLocality = cellCache.getIfPresent(cell);
+            if (cellLocality == null) {
+                statistics.cellMisses.incrementAndGet();
+                cellLocality = resolveCell(cell);
+                cellCache.put(cell, cellLocality);
+            } else {
+                statistics.cellHits.incrementAndGet();
+            }
+
+            if (cellLocality != BORDER_CELL) {
+                if (cellLocality.locality != null) {
+                    statistics.hits.incrementAndGet();
+                }
+                return cellLocality.locality;
+            }
+            statistics.borderCellLookups.incrementAndGet();
+        }
+
+        return getLocalityByPolygonTest(point);
+    }
+
+    private TopographicPlaceAdapter getLocalityByPolygonTest(Point point) {
+        List<IndexedLocality> candidates = tree.query(point.getEnvelopeInternal());
+        if (candidates.size() > 1) {
+            candidates.sort(Comparator.comparingInt(c -> c.order));
+        }
+
+        for (IndexedLocality candidate : candidates) {
+            statistics.polygonTests.incrementAndGet();
+            if (candidate.geometry.covers(point)) {
+                statistics.hits.incrementAndGet();
+                return candidate.locality;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolve the locality for all points in a cell. Localities are tested in order, so the first locality intersecting the cell decides.
+     * Either it covers the whole cell or the cell crosses a border. If no locality intersects the cell, no point in it has a locality.
+     */
+    private CellLocality resolveCell(long cell) {
+        Envelope envelope = getCellEnvelope(cell);
+        Geometry cellGeometry = geometryFactory.toGeometry(envelope);
+
+        List<IndexedLocality> candidates = tree.query(envelope);
+        if (candidates.size() > 1) {
+            candidates.sort(Comparator.comparingInt(c -> c.order));
+        }
+
+        for (IndexedLocality candidate : candidates) {
+            statistics.polygonTests.incrementAndGet();
+            if (candidate.geometry.covers(cellGeometry)) {
+                return new CellLocality(candidate.locality);
+            }
+            if (candidate.geometry.intersects(cellGeometry)) {
+                return BORDER_CELL;
+            }
+        }
+        return OUTSIDE_CELL;
+    }
+
+    private boolean isLonLat(double lon, double lat) {
+        return lon >= -180 && lon <= 180 && lat >= -90 && lat <= 90;
+    }
+
+    private long getCell(double lon, double lat) {
+        return ((long) getCellIndex(lon, -180, 360, lonBits) << 32) | getCellIndex(lat, -90, 180, latBits);
+    }
+
+    private int getCellIndex(double value, double min, double range, int bits) {
+        int cells = 1 << bits;
+        return Math.min((int) ((value - min) / range * cells), cells - 1);
+    }
+
+    private Envelope getCellEnvelope(long cell) {
+        double lonSize = 360d / (1 << lonBits);
+        double latSize = 180d / (1 << latBits);
+        double minLon = -180 + (cell >>> 32) * lonSize;
+        double minLat = -90 + (cell & 0xFFFFFFFFL) * latSize;
+        return new Envelope(minLon, minLon + lonSize, minLat, minLat + latSize);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public LookupStatistics getStatistics() {
+        return statistics;
+    }
+
+    private static class IndexedLocality {
+
+        private final int order;
+
+        private final TopographicPlaceAdapter locality;
+
+        private final PreparedGeometry geometry;
+
+        IndexedLocality(int order, TopographicPlaceAdapter locality, PreparedGeometry geometry) {
+            this.order = order;
+            this.locality = locality;
+            this.geometry = geometry;
+        }
+    }
+
+    private static class CellLocality {
+
+        private final TopographicPlaceAdapter locality;
+
+        CellLocality(TopographicPlaceAdapter locality) {
+            this.locality = locality;
+        }
+    }
+
+    /**
+     * Counters for locality lookups, for comparing cost of reverse geocoding between builds.
+     */
+    public static class LookupStatistics {
+
+        private final AtomicLong lookups = new AtomicLong();
+
+        private final AtomicLong polygonTests = new AtomicLong();
+
+        private final AtomicLong hits = new AtomicLong();
+
+        private final AtomicLong cellHits = new AtomicLong();
+
+        private final AtomicLong cellMisses = new AtomicLong();
+
+        private final AtomicLong borderCellLookups = new AtomicLong();
+
+        public long getLookups() {
+            return lookups.get();
+        }
+
+        public long getPolygonTests() {
+            return polygonTests.get();
+        }
+
+        public long getHits() {
+            return hits.get();
+        }
+
+        /**
+         * Lookups in a cell that was already cached.
+         */
+        public long getCellHits() {
+            return cellHits.get();
+        }
+
+        /**
+         * Lookups in a cell that had to be resolved first.
+         */
+        public long getCellMisses() {
+            return cellMisses.get();
+        }
+
+        /**
+         * Lookups in a cell crossing a border, that were tested against the polygons.
+         */
+        public long getBorderCellLookups() {
+            return borderCellLookups.get();
+        }
+
+        public double getCellHitRatio() {
+            long cellLookups = getCellHits() + getCellMisses();
+            return cellLookups == 0 ? 0 : (double) getCellHits() / cellLookups;
+        }
+
+        @Override
+        public String toString() {
+            return "lookups=" + getLookups() + ", polygonTests=" + getPolygonTests() + ", hits=" + getHits() + ", cellHits=" + getCellHits()
+                           + ", cellMisses=" + getCellMisses() + ", borderCellLookups=" + getBorderCellLookups() + String.format(", cellHitRatio=%.3f", getCellHitRatio());
+        }
+    }
+}
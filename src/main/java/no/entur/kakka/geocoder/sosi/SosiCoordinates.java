@@ -27,10 +27,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * Coordinates for shapes (KURVE/BUEP) in a SOSI file, converted to lon/lat.
+ * <p>
+ * Admin unit files contain millions of vertices, so coordinates for all shapes are packed into a single primitive array and
+ * indexed by shape serial number. Coordinate objects are only created when a geometry referring to the shape is built.
+ */
 public class SosiCoordinates {
 
     private Logger logger = LoggerFactory.getLogger(this.getClass());
@@ -40,7 +45,11 @@ public class SosiCoordinates {
     private String utmZone = "33";
 
 
-    private Map<Long, List<Coordinate>> coordinatesMap = new HashMap<>();
+    private final CurveIndex curveIndex = new CurveIndex();
+
+    private double[] ordinates = new double[1024];
+
+    private int ordinateCount;
 
     public SosiCoordinates(SosiElement head) {
         SosiElement transpar = head.findSubElement(se -> "TRANSPAR".equals(se.getName())).get();
@@ -66,43 +75,156 @@ public class SosiCoordinates {
         }
     }
 
-    public List<Coordinate> getForRef(Long ref) {
-        return coordinatesMap.get(ref);
+    /**
+     * Get number of points for shape.
+     *
+     * @return number of points, or -1 if shape is unknown
+     */
+    public int getPointCount(long ref) {
+        int slot = curveIndex.find(ref);
+        return slot < 0 ? -1 : curveIndex.lengths[slot];
+    }
+
+    /**
+     * Add coordinates for shape to list, optionally in reversed order.
+     */
+    public void addCoordinatesForRef(long ref, boolean reversed, List<Coordinate> target) {
+        int slot = curveIndex.find(ref);
+        if (slot < 0) {
+            return;
+        }
+        int offset = curveIndex.offsets[slot];
+        int pointCount = curveIndex.lengths[slot];
+        for (int i = 0; i < pointCount; i++) {
+            int point = reversed ? pointCount - 1 - i : i;
+            target.add(new Coordinate(ordinates[offset + 2 * point], ordinates[offset + 2 * point + 1]));
+        }
     }
 
     public void collectCoordinates(SosiElement sosiElement) {
         if (sosiElement.getName().equals("KURVE") || sosiElement.getName().equals("BUEP")) {
 
-            Long id = sosiElement.getValueAs(SosiSerialNumber.class).longValue();
+            long id = sosiElement.getValueAs(SosiSerialNumber.class).longValue();
 
             List<SosiNumber> sosiNumbers = new ArrayList<>();
             sosiElement.subElements().filter(se -> "NØ".equals(se.getName())).forEach(se -> sosiNumbers.addAll(se.getValuesAs(SosiNumber.class)));
 
-            List<Coordinate> coordinates = toLatLonCoordinates(sosiNumbers);
+            double[] lonLat = toLatLonOrdinates(sosiNumbers);
+            int pointCount = lonLat == null ? 0 : lonLat.length / 2;
 
-            coordinatesMap.put(id, coordinates);
+            int offset = ordinateCount;
+            if (pointCount > 0) {
+                ensureCapacity(ordinateCount + lonLat.length);
+                System.arraycopy(lonLat, 0, ordinates, ordinateCount, lonLat.length);
+                ordinateCount += lonLat.length;
+            }
+            curveIndex.put(id, offset, pointCount);
         }
 
     }
 
     public List<Coordinate> toLatLonCoordinates(List<SosiNumber> sosiNumbers) {
-        List<Coordinate> coordinates = new ArrayList<>();
-        Double y = null;
-        for (SosiNumber sosiNumber : sosiNumbers) {
-            if (y == null) {
-                y = sosiNumber.longValue() * unit;
-            } else {
-                Double x = sosiNumber.longValue() * unit;
-                try {
-                    Coordinate utmCoord = new Coordinate(x, y);
-                    coordinates.add(GeometryTransformer.fromUTM(utmCoord, utmZone));
-                } catch (Exception e) {
-                    logger.warn("Failed to convert coordinates from utm to wgs84:" + e.getMessage(), e);
+        double[] lonLat = toLatLonOrdinates(sosiNumbers);
+        if (lonLat == null) {
+            return new ArrayList<>();
+        }
+        List<Coordinate> coordinates = new ArrayList<>(lonLat.length / 2);
+        for (int i = 0; i < lonLat.length / 2; i++) {
+            coordinates.add(new Coordinate(lonLat[2 * i], lonLat[2 * i + 1]));
+        }
+        return coordinates;
+    }
+
+    /**
+     * Convert SOSI NØ values to packed lon/lat pairs.
+     *
+     * @return lon/lat pairs, or null if conversion failed
+     */
+    private double[] toLatLonOrdinates(List<SosiNumber> sosiNumbers) {
+        // SOSI lists northing before easting, transformer expects easting first
+        int pointCount = sosiNumbers.size() / 2;
+        double[] lonLat = new double[pointCount * 2];
+        for (int i = 0; i < pointCount; i++) {
+            lonLat[2 * i] = sosiNumbers.get(2 * i + 1).longValue() * unit;
+            lonLat[2 * i + 1] = sosiNumbers.get(2 * i).longValue() * unit;
+        }
+
+        try {
+            GeometryTransformer.fromUTM(lonLat, utmZone);
+        } catch (Exception e) {
+            logger.warn("Failed to convert coordinates from utm to wgs84:" + e.getMessage(), e);
+            return null;
+        }
+        return lonLat;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > ordinates.length) {
+            ordinates = Arrays.copyOf(ordinates, Math.max(capacity, ordinates.length * 2));
+        }
+    }
+
+    /**
+     * Open addressing hash index from shape serial number to offset and point count in the packed ordinate array.
+     */
+    private static class CurveIndex {
+
+        private long[] keys = new long[256];
+
+        private int[] offsets = new int[256];
+
+        private int[] lengths = new int[256];
+
+        private boolean[] used = new boolean[256];
+
+        private int size;
+
+        void put(long key, int offset, int length) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int slot = slotFor(key);
+            if (!used[slot]) {
+                used[slot] = true;
+                keys[slot] = key;
+                size++;
+            }
+            offsets[slot] = offset;
+            lengths[slot] = length;
+        }
+
+        int find(long key) {
+            int slot = slotFor(key);
+            return used[slot] ? slot : -1;
+        }
+
+        private int slotFor(long key) {
+            int mask = keys.length - 1;
+            int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldOffsets = offsets;
+            int[] oldLengths = lengths;
+            boolean[] oldUsed = used;
+
+            keys = new long[capacity];
+            offsets = new int[capacity];
+            lengths = new int[capacity];
+            used = new boolean[capacity];
+            size = 0;
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    put(oldKeys[i], oldOffsets[i], oldLengths[i]);
                 }
-                y = null;
             }
         }
-        return coordinates;
     }
 
 }
@@ -26,6 +26,10 @@ public class SosiCounty extends SosiElementWrapper {
         super(sosiElement, coordinates);
     }
 
+    public SosiCounty(SosiElement sosiElement, SosiCoordinates coordinates, SosiElementProperties properties) {
+        super(sosiElement, coordinates, properties);
+    }
+
     @Override
     public Type getType() {
         return Type.COUNTY;
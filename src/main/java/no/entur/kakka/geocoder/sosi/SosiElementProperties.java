@@ -0,0 +1,92 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.sosi;
+
+import no.vegvesen.nvdb.sosi.document.SosiElement;
+import no.vegvesen.nvdb.sosi.document.SosiValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the sub elements of a SOSI element by dotted path (ie "IDENT.LOKALID"), built in one pass on first lookup.
+ * <p>
+ * As when following the path with findSubElement, only the first sub element with a given name is indexed at each level. Repeated
+ * sub elements directly below the element (ie names in several languages) are available through getSubElements.
+ */
+public class SosiElementProperties {
+
+    private static final String PATH_SEPARATOR = ".";
+
+    private final SosiElement sosiElement;
+
+    private Map<String, SosiElement> elementsByPath;
+
+    private Map<String, List<SosiElement>> subElementsByName;
+
+    public SosiElementProperties(SosiElement sosiElement) {
+        this.sosiElement = sosiElement;
+    }
+
+    public String get(String... path) {
+        SosiElement subElement = getElement(path);
+        if (subElement != null) {
+            SosiValue value = subElement.getValueAs(SosiValue.class);
+            return value == null ? null : value.getString();
+        }
+        return null;
+    }
+
+    public SosiElement getElement(String... path) {
+        index();
+        return elementsByPath.get(String.join(PATH_SEPARATOR, path));
+    }
+
+    /**
+     * All sub elements with the given name directly below the element.
+     */
+    public List<SosiElement> getSubElements(String name) {
+        index();
+        return subElementsByName.getOrDefault(name, Collections.emptyList());
+    }
+
+    private void index() {
+        if (elementsByPath == null) {
+            elementsByPath = new HashMap<>();
+            subElementsByName = new HashMap<>();
+            index(sosiElement, null);
+        }
+    }
+
+    private void index(SosiElement element, String parentPath) {
+        element.subElements().forEach(se -> {
+            if (parentPath == null) {
+                subElementsByName.computeIfAbsent(se.getName(), k -> new ArrayList<>()).add(se);
+            }
+            String path = parentPath == null ? se.getName() : parentPath + PATH_SEPARATOR + se.getName();
+            if (!elementsByPath.containsKey(path)) {
+                elementsByPath.put(path, se);
+                if (se.hasSubElements()) {
+                    index(se, path);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.sosi;
+
+import no.vegvesen.nvdb.sosi.Sosi;
+import no.vegvesen.nvdb.sosi.document.SosiDocument;
+import no.vegvesen.nvdb.sosi.document.SosiElement;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Streaming reader for SOSI files, returning one top level element at a time.
+ * <p>
+ * The SOSI parser only reads complete documents, so the file is split into elements line by line and each element is parsed
+ * separately together with the file header. Elements where no line matches the matcher are skipped without being parsed.
+ * <p>
+ * Lines are read as ISO-8859-1, so that the bytes are passed unchanged to the SOSI parser which decodes them according to the character
+ * set declared in the header (..TEGNSETT). Only lines given to the matcher are decoded with the declared character set.
+ */
+public class SosiElementReader implements Closeable {
+
+    private static final String END_OF_FILE = ".SLUTT";
+
+    private static final String CHARACTER_SET = "TEGNSETT";
+
+    private final BufferedReader reader;
+
+    private final Function<Pair<String, String>, Boolean> matcher;
+
+    private final String headText;
+
+    private final SosiElement head;
+
+    private final Charset characterSet;
+
+    private String nextElementStart;
+
+    public SosiElementReader(InputStream inputStream) {
+        this(inputStream, kv -> true);
+    }
+
+    public SosiElementReader(InputStream inputStream, Function<Pair<String, String>, Boolean> matcher) {
+        this.reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.ISO_8859_1));
+        this.matcher = matcher;
+        try {
+            this.headText = readHead();
+            this.head = parse(headText).getHead();
+            this.characterSet = readCharacterSet(headText);
+        } catch (IOException ioe) {
+            throw new RuntimeException("Failed to read SOSI file header: " + ioe.getMessage(), ioe);
+        }
+    }
+
+    public SosiElement getHead() {
+        return head;
+    }
+
+    /**
+     * Read next top level element matching the matcher.
+     *
+     * @return next element or null when there are no more elements
+     */
+    public SosiElement next() throws IOException {
+        while (nextElementStart != null) {
+            StringBuilder elementText = new StringBuilder(nextElementStart).append('\n');
+            boolean match = matcher.apply(splitLine(decode(nextElementStart)));
+            nextElementStart = null;
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (isStartOfElement(line)) {
+                    if (!line.startsWith(END_OF_FILE)) {
+                        nextElementStart = line;
+                    }
+                    break;
+                }
+                elementText.append(line).append('\n');
+                if (!match && matcher.apply(splitLine(decode(line)))) {
+                    match = true;
+                }
+            }
+
+            if (match) {
+                List<SosiElement> elements = new ArrayList<>();
+                parse(headText + elementText).getElements().forEach(elements::add);
+                if (!elements.isEmpty()) {
+                    return elements.get(0);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private String readHead() throws IOException {
+        StringBuilder headText = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (isStartOfElement(line)) {
+                if (!line.startsWith(END_OF_FILE)) {
+                    nextElementStart = line;
+                }
+                break;
+            }
+            headText.append(line).append('\n');
+        }
+        return headText.toString();
+    }
+
+    private SosiDocument parse(String text) {
+        return Sosi.createReader(new ByteArrayInputStream((text + END_OF_FILE + "\n").getBytes(StandardCharsets.ISO_8859_1))).read();
+    }
+
+    /**
+     * Map the character set declared in the header to a Java charset. Unknown character sets are left as ISO-8859-1.
+     */
+    private static Charset readCharacterSet(String headText) {
+        for (String line : headText.split("\n")) {
+            Pair<String, String> kv = splitLine(line.trim());
+            if (CHARACTER_SET.equals(kv.getKey()) && kv.getValue() != null) {
+                String name = kv.getValue().trim().toUpperCase();
+                if ("ANSI".equals(name)) {
+                    name = "windows-1252";
+                } else if (name.startsWith("ISO8859")) {
+                    name = "ISO-" + name.substring(3);
+                }
+                try {
+                    if (Charset.isSupported(name)) {
+                        return Charset.forName(name);
+                    }
+                } catch (IllegalCharsetNameException e) {
+                    // Fall through to default
+                }
+            }
+        }
+        return StandardCharsets.ISO_8859_1;
+    }
+
+    private String decode(String line) {
+        if (StandardCharsets.ISO_8859_1.equals(characterSet) || line.chars().allMatch(c -> c < 0x80)) {
+            return line;
+        }
+        return new String(line.getBytes(StandardCharsets.ISO_8859_1), characterSet);
+    }
+
+    static Pair<String, String> splitLine(String line) {
+        String field = line.replaceFirst("^\\.+(?!$)", "");
+        int split = field.indexOf(" ");
+
+        if (split >= 0) {
+            String key = field.substring(0, split);
+            String value = field.substring(split + 1, field.length());
+            return Pair.of(key, value);
+        }
+        return Pair.of(field, null);
+    }
+
+    private boolean isStartOfElement(String line) {
+        return line.startsWith(".") && !line.startsWith("..") && !line.startsWith(".HODE");
+    }
+}
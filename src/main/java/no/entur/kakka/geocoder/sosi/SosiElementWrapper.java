@@ -16,7 +16,6 @@
 
 package no.entur.kakka.geocoder.sosi;
 
-import com.google.common.collect.Lists;
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
@@ -33,8 +32,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.stream.Collectors;
 
 public abstract class SosiElementWrapper implements TopographicPlaceAdapter {
     private Logger logger = LoggerFactory.getLogger(this.getClass());
@@ -44,9 +41,16 @@ public abstract class SosiElementWrapper implements TopographicPlaceAdapter {
 
     protected SosiCoordinates coordinates;
 
+    private SosiElementProperties properties;
+
     public SosiElementWrapper(SosiElement sosiElement, SosiCoordinates coordinates) {
+        this(sosiElement, coordinates, null);
+    }
+
+    public SosiElementWrapper(SosiElement sosiElement, SosiCoordinates coordinates, SosiElementProperties properties) {
         this.sosiElement = sosiElement;
         this.coordinates = coordinates;
+        this.properties = properties;
     }
 
     protected abstract String getNamePropertyName();
@@ -58,26 +62,18 @@ public abstract class SosiElementWrapper implements TopographicPlaceAdapter {
         }
         List<Coordinate> coordinateList = new ArrayList<>();
 
-        Optional<SosiElement> refElement = sosiElement.findSubElement(se -> "REF".equals(se.getName()));
-        if (refElement.isPresent()) {
-            for (SosiValue ref : refElement.get().getValuesAs(SosiValue.class)) {
+        SosiElement refElement = getProperties().getElement("REF");
+        if (refElement != null) {
+            for (SosiValue ref : refElement.getValuesAs(SosiValue.class)) {
 
                 if (ref instanceof SosiRefNumber) {
                     SosiRefNumber sosiRefNumber = (SosiRefNumber) ref;
-                    Long refId = sosiRefNumber.longValue();
-                    List<Coordinate> coordinatesForRef = coordinates.getForRef(refId);
-                    if (coordinatesForRef != null) {
-
-                        if (!coordinatesForRef.isEmpty()) {
-                            if (sosiRefNumber.isReversedOrder()) {
-                                coordinateList.addAll(Lists.reverse(coordinatesForRef));
-                            } else {
-                                coordinateList.addAll(coordinatesForRef);
-                            }
-
-                        } else {
-                            logger.info("Bad coord sequence for  SosiRef: " + refId + " for: " + getType() + ": " + getId() + ": " + getName());
-                        }
+                    long refId = sosiRefNumber.longValue();
+                    int pointCount = coordinates.getPointCount(refId);
+                    if (pointCount > 0) {
+                        coordinates.addCoordinatesForRef(refId, sosiRefNumber.isReversedOrder(), coordinateList);
+                    } else if (pointCount == 0) {
+                        logger.info("Bad coord sequence for  SosiRef: " + refId + " for: " + getType() + ": " + getId() + ": " + getName());
                     } else {
                         logger.info("Ignore unknown SosiRef: " + refId + " for: " + getType() + ": " + getId() + ": " + getName());
                     }
@@ -107,19 +103,14 @@ public abstract class SosiElementWrapper implements TopographicPlaceAdapter {
     }
 
     protected String getProperty(String... path) {
+        return getProperties().get(path);
+    }
 
-        SosiElement subElement = sosiElement;
-        for (String propName : path) {
-            subElement = subElement.findSubElement(se -> propName.equals(se.getName())).orElse(null);
-            if (subElement == null) {
-                break;
-            }
-        }
-
-        if (subElement != null) {
-            return subElement.getValueAs(SosiValue.class).getString();
+    protected SosiElementProperties getProperties() {
+        if (properties == null) {
+            properties = new SosiElementProperties(sosiElement);
         }
-        return null;
+        return properties;
     }
 
     @Override
@@ -140,14 +131,15 @@ public abstract class SosiElementWrapper implements TopographicPlaceAdapter {
     protected Map<String, String> getNames() {
         if (names == null) {
             names = new HashMap<>();
-            for (SosiElement nameElement : sosiElement.findSubElements(se -> getNamePropertyName().equals(se.getName())).collect(Collectors.toList())) {
+            for (SosiElement nameElement : getProperties().getSubElements(getNamePropertyName())) {
                 String lang = null;
                 String name = null;
 
-                Optional<SosiElement> langSubElement = nameElement.findSubElement(se -> "SPRÅK".equals(se.getName()));
-                if (langSubElement.isPresent()) {
-                    lang = langSubElement.get().getValueAs(SosiValue.class).toString();
-                    name = nameElement.findSubElement(se -> "NAVN".equals(se.getName())).get().getValueAs(SosiValue.class).toString();
+                SosiElementProperties nameProperties = new SosiElementProperties(nameElement);
+                SosiElement langSubElement = nameProperties.getElement("SPRÅK");
+                if (langSubElement != null) {
+                    lang = langSubElement.getValueAs(SosiValue.class).toString();
+                    name = nameProperties.getElement("NAVN").getValueAs(SosiValue.class).toString();
                 } else {
                     List<SosiValue> values = nameElement.getValuesAs(SosiValue.class);
                     if (values.size() > 0) {
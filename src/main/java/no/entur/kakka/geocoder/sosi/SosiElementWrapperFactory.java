@@ -17,24 +17,23 @@
 package no.entur.kakka.geocoder.sosi;
 
 import no.vegvesen.nvdb.sosi.document.SosiElement;
-import no.vegvesen.nvdb.sosi.document.SosiString;
 import org.springframework.stereotype.Service;
 
 @Service
 public class SosiElementWrapperFactory {
 
     public SosiElementWrapper createWrapper(SosiElement sosiElement, SosiCoordinates coordinates) {
-        SosiElement objectType = sosiElement.findSubElement(se -> "OBJTYPE".equals(se.getName())).get();
-
-        if (objectType != null) {
-            String type = objectType.getValueAs(SosiString.class).getString();
+        // Index is built once here and shared with the wrapper for all later property lookups
+        SosiElementProperties properties = new SosiElementProperties(sosiElement);
+        String type = properties.get("OBJTYPE");
 
+        if (type != null) {
             if (SosiCounty.OBJECT_TYPE.equals(type)) {
-                return new SosiCounty(sosiElement, coordinates);
+                return new SosiCounty(sosiElement, coordinates, properties);
             } else if (SosiLocality.OBJECT_TYPE.equals(type)) {
-                return new SosiLocality(sosiElement, coordinates);
+                return new SosiLocality(sosiElement, coordinates, properties);
             } else if (SosiPlace.OBJECT_TYPE.equals(type)) {
-                return new SosiPlace(sosiElement, coordinates);
+                return new SosiPlace(sosiElement, coordinates, properties);
             }
         }
 
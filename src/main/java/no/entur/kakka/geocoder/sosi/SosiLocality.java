@@ -27,6 +27,10 @@ public class SosiLocality extends SosiElementWrapper {
         super(sosiElement, coordinates);
     }
 
+    public SosiLocality(SosiElement sosiElement, SosiCoordinates coordinates, SosiElementProperties properties) {
+        super(sosiElement, coordinates, properties);
+    }
+
     @Override
     public TopographicPlaceAdapter.Type getType() {
         return TopographicPlaceAdapter.Type.LOCALITY;
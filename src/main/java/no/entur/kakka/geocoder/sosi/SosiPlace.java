@@ -38,6 +38,10 @@ public class SosiPlace extends SosiElementWrapper {
         super(sosiElement, coordinates);
     }
 
+    public SosiPlace(SosiElement sosiElement, SosiCoordinates coordinates, SosiElementProperties properties) {
+        super(sosiElement, coordinates, properties);
+    }
+
     @Override
     public String getId() {
         return getProperty("IDENT", "LOKALID");
@@ -18,10 +18,7 @@ package no.entur.kakka.geocoder.sosi;
 
 import com.vividsolutions.jts.geom.Geometry;
 import no.entur.kakka.geocoder.netex.TopographicPlaceAdapter;
-import no.vegvesen.nvdb.sosi.Sosi;
-import no.vegvesen.nvdb.sosi.document.SosiDocument;
 import no.vegvesen.nvdb.sosi.document.SosiElement;
-import no.vegvesen.nvdb.sosi.reader.SosiReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,8 +26,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class SosiTopographicPlaceAdapterReader {
@@ -74,10 +73,10 @@ public class SosiTopographicPlaceAdapterReader {
     }
 
     /**
-     * Read content from SOSI file
+     * Read content from SOSI file in a single pass
      * <p>
-     * 1. Map all shapes with coordinates
-     * 2. Read all areas and wrap in TopographicPlaceAdapter
+     * 1. Map all shapes with coordinates and keep area elements
+     * 2. Wrap kept areas in TopographicPlaceAdapter, as areas may refer to shapes later in the file
      *
      * @throws IOException
      */
@@ -85,26 +84,32 @@ public class SosiTopographicPlaceAdapterReader {
         if (sosiInputStream == null) {
             sosiInputStream = new FileInputStream(sosiFile);
         }
-        SosiReader reader = Sosi.createReader(sosiInputStream);
+        List<SosiElement> areaElements = new ArrayList<>();
+        try (SosiElementReader reader = new SosiElementReader(sosiInputStream)) {
+            coordinates = new SosiCoordinates(reader.getHead());
+            SosiElement sosiElement;
+            while ((sosiElement = reader.next()) != null) {
+                if (isAdminUnit(sosiElement)) {
+                    areaElements.add(sosiElement);
+                } else {
+                    coordinates.collectCoordinates(sosiElement);
+                }
+            }
+        }
+        areaElements.forEach(se -> collectAdminUnits(se));
+    }
 
-        SosiDocument doc = reader.read();
-        coordinates = new SosiCoordinates(doc.getHead());
-        doc.getElements().forEach(se -> coordinates.collectCoordinates(se));
-        doc.getElements().forEach(se -> collectAdminUnits(se));
-        sosiInputStream.close();
+    private boolean isAdminUnit(SosiElement sosiElement) {
+        return (sosiElement.getName().equals(SVERM_TYPE) || sosiElement.getName().equals(AREA_TYPE) || sosiElement.getName().equals(POINT_TYPE)) && sosiElement.hasSubElements();
     }
 
     private void collectAdminUnits(SosiElement sosiElement) {
-
-        if ((sosiElement.getName().equals(SVERM_TYPE) || sosiElement.getName().equals(AREA_TYPE)|| sosiElement.getName().equals(POINT_TYPE)) && sosiElement.hasSubElements()) {
-
-            TopographicPlaceAdapter area = wrapperFactory.createWrapper(sosiElement, coordinates);
-            if (area != null) {
-                String id = area.getId();
-                TopographicPlaceAdapter existingArea = adapterMap.get(id);
-                if (area.isValid() && shouldAddNewArea(area, existingArea)) {
-                    adapterMap.put(id, area);
-                }
+        TopographicPlaceAdapter area = wrapperFactory.createWrapper(sosiElement, coordinates);
+        if (area != null) {
+            String id = area.getId();
+            TopographicPlaceAdapter existingArea = adapterMap.get(id);
+            if (area.isValid() && shouldAddNewArea(area, existingArea)) {
+                adapterMap.put(id, area);
             }
         }
     }
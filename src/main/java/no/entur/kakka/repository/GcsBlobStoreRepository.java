@@ -25,11 +25,13 @@ import org.apache.commons.lang3.StringUtils;
 import org.rutebanken.helper.gcp.BlobStoreHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Repository;
 
 import java.io.InputStream;
+import java.nio.channels.Channels;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
@@ -46,6 +48,9 @@ public class GcsBlobStoreRepository implements BlobStoreRepository {
 
     private String containerName;
 
+    @Autowired(required = false)
+    private LocalBlobCache localBlobCache;
+
 
     @Override
     public void setStorage(Storage storage) {
@@ -93,7 +98,15 @@ public class GcsBlobStoreRepository implements BlobStoreRepository {
 
     @Override
     public InputStream getBlob(String name) {
-        return BlobStoreHelper.getBlob(storage, containerName, name);
+        if (localBlobCache == null || !localBlobCache.isEnabled()) {
+            return BlobStoreHelper.getBlob(storage, containerName, name);
+        }
+        // Only metadata is fetched if the current version of the blob is already cached
+        Blob blob = storage.get(BlobId.of(containerName, name));
+        if (blob == null) {
+            return null;
+        }
+        return localBlobCache.getBlob(name, blob.getGeneration(), blob.getMd5(), blob.getSize(), () -> Channels.newInputStream(blob.reader()));
     }
 
     @Override
@@ -119,6 +132,7 @@ public class GcsBlobStoreRepository implements BlobStoreRepository {
 
     private BlobStoreFiles.File toBlobStoreFile(Blob blob, String fileName) {
         BlobStoreFiles.File file = new BlobStoreFiles.File(fileName, new Date(blob.getCreateTime()), new Date(blob.getUpdateTime()), blob.getSize());
+        file.setMd5(blob.getMd5());
 
         if (blob.getAcl() != null) {
             if (blob.getAcl().stream().anyMatch(acl -> Acl.User.ofAllUsers().equals(acl.getEntity()) && acl.getRole() != null)) {
@@ -18,6 +18,7 @@ package no.entur.kakka.repository;
 
 import com.google.cloud.storage.Storage;
 import no.entur.kakka.domain.BlobStoreFiles;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.slf4j.Logger;
@@ -29,6 +30,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -54,13 +56,19 @@ public class InMemoryBlobStoreRepository implements BlobStoreRepository {
         logger.debug("list blobs called in in-memory blob store");
         List<BlobStoreFiles.File> files = blobs.keySet().stream()
                                                   .filter(k -> prefixes.stream().anyMatch(prefix -> k.startsWith(prefix)))
-                                                  .map(k -> new BlobStoreFiles.File(k,new Date(), new Date(), 1234L))    //TODO Add real details?
+                                                  .map(k -> toBlobStoreFile(k))
                                                   .collect(Collectors.toList());
         BlobStoreFiles blobStoreFiles = new BlobStoreFiles();
         blobStoreFiles.add(files);
         return blobStoreFiles;
     }
 
+    private BlobStoreFiles.File toBlobStoreFile(String objectName) {
+        BlobStoreFiles.File file = new BlobStoreFiles.File(objectName, new Date(), new Date(), 1234L);    //TODO Add real details?
+        file.setMd5(Base64.getEncoder().encodeToString(DigestUtils.md5(blobs.get(objectName))));
+        return file;
+    }
+
     @Override
     public BlobStoreFiles listBlobsFlat(String prefix) {
         List<BlobStoreFiles.File> files = listBlobs(prefix).getFiles();
@@ -0,0 +1,238 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.repository;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Local on disk cache of blob content, shared by all blob store repositories in the application.
+ * <p>
+ * Entries are addressed by object name, generation and MD5 digest, so a changed blob is never served from an old entry. Content is
+ * verified against the digest when it is added and against the size when it is read. The total size of the cache is bounded, least
+ * recently used entries are evicted first.
+ */
+@Component
+public class LocalBlobCache {
+    private static final Logger logger = LoggerFactory.getLogger(LocalBlobCache.class);
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final boolean enabled;
+
+    private final File directory;
+
+    private final long maxBytes;
+
+    /**
+     * Size of entries by file name, in access order.
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    public LocalBlobCache(@Value("${blobstore.local.cache.enabled:false}") boolean enabled,
+                                 @Value("${blobstore.local.cache.directory:files/blobCache}") String directory,
+                                 @Value("${blobstore.local.cache.max.size.mb:2048}") long maxSizeMb) {
+        this.enabled = enabled;
+        this.directory = new File(directory);
+        this.maxBytes = maxSizeMb * 1024 * 1024;
+        if (enabled) {
+            loadEntries();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get content for a version of a blob, downloading it to the cache if it is not already cached.
+     *
+     * @param objectName name of the blob
+     * @param generation generation of the blob, or null if not known
+     * @param md5        base64 encoded MD5 digest of the content, or null if not known
+     * @param size       size of the content in bytes
+     * @param download   opens a stream with the content of the blob
+     */
+    public InputStream getBlob(String objectName, Long generation, String md5, long size, Supplier<InputStream> download) {
+        if (size > maxBytes) {
+            misses.incrementAndGet();
+            return download.get();
+        }
+
+        String fileName = DigestUtils.sha256Hex(objectName + "@" + generation + "#" + md5);
+        File file = new File(directory, fileName);
+
+        InputStream cached = openIfValid(fileName, file, size);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        misses.incrementAndGet();
+        try {
+            download(objectName, md5, file, download);
+            // Open before adding, as adding may evict other entries
+            InputStream in = new FileInputStream(file);
+            addEntry(fileName, file.length());
+            return in;
+        } catch (IOException ioe) {
+            throw new RuntimeException("Failed to cache blob " + objectName + ": " + ioe.getMessage(), ioe);
+        }
+    }
+
+    private InputStream openIfValid(String fileName, File file, long size) {
+        synchronized (this) {
+            if (!entries.containsKey(fileName)) {
+                return null;
+            }
+            if (file.length() != size) {
+                logger.warn("Removing invalid entry from local blob cache: {}", file);
+                removeEntry(fileName);
+                return null;
+            }
+            // Keep access order for entries picked up after a restart
+            file.setLastModified(System.currentTimeMillis());
+        }
+        try {
+            return new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            // Evicted concurrently
+            return null;
+        }
+    }
+
+    /**
+     * Download to a file of its own, which is moved in place once the content has been verified, so that readers never see
+     * incomplete content.
+     */
+    private void download(String objectName, String md5, File file, Supplier<InputStream> download) throws IOException {
+        FileUtils.forceMkdir(directory);
+        File tmpFile = File.createTempFile(file.getName(), TMP_SUFFIX, directory);
+        try {
+            MessageDigest digest = DigestUtils.getMd5Digest();
+            try (InputStream in = new DigestInputStream(download.get(), digest); OutputStream out = FileUtils.openOutputStream(tmpFile)) {
+                IOUtils.copyLarge(in, out, new byte[BUFFER_SIZE]);
+            }
+            String actualMd5 = Base64.getEncoder().encodeToString(digest.digest());
+            if (md5 != null && !md5.equals(actualMd5)) {
+                throw new IOException("Digest of downloaded content " + actualMd5 + " does not match expected digest " + md5);
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.debug("Cached blob {} in {}", objectName, file);
+        } finally {
+            FileUtils.deleteQuietly(tmpFile);
+        }
+    }
+
+    private synchronized void addEntry(String fileName, long size) {
+        Long previousSize = entries.put(fileName, size);
+        totalBytes += size - (previousSize == null ? 0 : previousSize);
+        evict();
+    }
+
+    private synchronized void removeEntry(String fileName) {
+        Long size = entries.remove(fileName);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        FileUtils.deleteQuietly(new File(directory, fileName));
+    }
+
+    /**
+     * Evict least recently used entries until the cache is within its size bound. Open streams of evicted entries can still be read.
+     */
+    private synchronized void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            iterator.remove();
+            totalBytes -= entry.getValue();
+            FileUtils.deleteQuietly(new File(directory, entry.getKey()));
+        }
+    }
+
+    /**
+     * Pick up entries from earlier runs, oldest first, and remove incomplete downloads.
+     */
+    private synchronized void loadEntries() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (file.getName().endsWith(TMP_SUFFIX)) {
+                FileUtils.deleteQuietly(file);
+            } else if (file.isFile()) {
+                entries.put(file.getName(), file.length());
+                totalBytes += file.length();
+            }
+        }
+        evict();
+        logger.info("Local blob cache in {} has {} entries with {} bytes", directory, entries.size(), totalBytes);
+    }
+
+    public synchronized long getSize() {
+        return totalBytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + getHits() + ", misses=" + getMisses() + ", bytes=" + getSize();
+    }
+}
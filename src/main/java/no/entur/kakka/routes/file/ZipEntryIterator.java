@@ -0,0 +1,170 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.routes.file;
+
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Iterate over the entries in a zip archive stream, without extracting the archive to disk.
+ * <p>
+ * All entries are read from the same archive stream, so an entry must be consumed before moving on to the next and entries cannot be
+ * processed concurrently. Closing the stream of an entry does not close the archive. The archive is closed when the last entry has been
+ * passed or when the iterator is closed.
+ * <p>
+ * As Camel's streaming splitter, {@link #hasNext()} does not skip the entry last returned while it still has unread content. It then
+ * answers optimistically, and {@link #next()} returns null if it turns out there were no more matching entries. Camel skips null parts,
+ * other callers should use {@link #nextEntry()}.
+ */
+public class ZipEntryIterator implements Iterator<ZipEntryIterator.Entry>, Closeable {
+    private static Logger logger = LoggerFactory.getLogger(ZipEntryIterator.class);
+
+    private final ZipInputStream zipInputStream;
+
+    private final Predicate<String> entryNameFilter;
+
+    private Entry current;
+
+    private Entry next;
+
+    private boolean closed;
+
+    public ZipEntryIterator(InputStream inputStream, Predicate<String> entryNameFilter) {
+        this.zipInputStream = new ZipInputStream(inputStream);
+        this.entryNameFilter = entryNameFilter;
+    }
+
+    /**
+     * Iterate over entries with the given file extension, ignoring case.
+     */
+    public ZipEntryIterator(InputStream inputStream, String fileExtension) {
+        this(inputStream, name -> name.toLowerCase().endsWith("." + fileExtension.toLowerCase()));
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+        if (current != null && hasUnreadContent()) {
+            return true;
+        }
+        next = readNextEntry();
+        return next != null;
+    }
+
+    /**
+     * Returns the next entry, or null if the previous call to {@link #hasNext()} was answered optimistically and there were no more entries.
+     */
+    @Override
+    public Entry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return nextEntry();
+    }
+
+    /**
+     * Move to the next matching entry, skipping any unread content of the current entry.
+     *
+     * @return the next entry or null if there are no more matching entries
+     */
+    public Entry nextEntry() {
+        if (next == null && !closed) {
+            next = readNextEntry();
+        }
+        current = next;
+        next = null;
+        return current;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            zipInputStream.close();
+        }
+    }
+
+    private boolean hasUnreadContent() {
+        try {
+            return zipInputStream.available() > 0;
+        } catch (IOException ioE) {
+            return false;
+        }
+    }
+
+    private Entry readNextEntry() {
+        try {
+            ZipEntry zipEntry;
+            while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+                if (!zipEntry.isDirectory() && entryNameFilter.test(zipEntry.getName())) {
+                    logger.info("Reading zip entry: {}", zipEntry.getName());
+                    return new Entry(zipEntry.getName(), new CloseShieldInputStream(zipInputStream));
+                }
+            }
+            close();
+            return null;
+        } catch (IOException ioE) {
+            throw new RuntimeException("Failed to read zip archive: " + ioE.getMessage(), ioE);
+        }
+    }
+
+    public static class Entry {
+
+        private final String name;
+
+        private final InputStream inputStream;
+
+        Entry(String name, InputStream inputStream) {
+            this.name = name;
+            this.inputStream = inputStream;
+        }
+
+        /**
+         * Name of the entry, including the path within the archive.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Name of the entry, without the path within the archive.
+         */
+        public String getFileName() {
+            return name.substring(name.lastIndexOf('/') + 1);
+        }
+
+        public InputStream getInputStream() {
+            return inputStream;
+        }
+    }
+}
@@ -18,57 +18,15 @@ package no.entur.kakka.routes.file;
 
 import no.entur.kakka.exceptions.KakkaException;
 import org.apache.commons.io.FileUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 public class ZipFileUtils {
-    private static Logger logger = LoggerFactory.getLogger(ZipFileUtils.class);
-
-    public static void unzipFile(InputStream inputStream, String targetFolder) {
-        try {
-            byte[] buffer = new byte[1024];
-            ZipInputStream zis = new ZipInputStream(inputStream);
-            ZipEntry zipEntry = zis.getNextEntry();
-            while (zipEntry != null) {
-                String fileName = zipEntry.getName();
-                logger.info("unzipping file: {}", fileName);
-
-                File newFile = new File(targetFolder + "/" + fileName);
-                if (fileName.endsWith("/")) {
-                    newFile.mkdirs();
-                    continue;
-                }
-
-                File parent = newFile.getParentFile();
-                if (parent != null) {
-                    parent.mkdirs();
-                }
-
-
-                FileOutputStream fos = new FileOutputStream(newFile);
-                int len;
-                while ((len = zis.read(buffer)) > 0) {
-                    fos.write(buffer, 0, len);
-                }
-                fos.close();
-                zipEntry = zis.getNextEntry();
-            }
-            zis.closeEntry();
-            zis.close();
-        } catch (IOException ioE) {
-            throw new RuntimeException("Unzipping archive failed: " + ioE.getMessage(), ioE);
-        }
-    }
-
 
     public static File zipFilesInFolder(String folder, String targetFilePath) {
         try {
@@ -28,19 +28,26 @@ import org.apache.commons.collections4.CollectionUtils;
 import org.junit.Assert;
 import org.junit.Test;
 import org.rutebanken.netex.model.IanaCountryTldEnumeration;
+import org.rutebanken.netex.model.MultilingualString;
 import org.rutebanken.netex.model.PublicationDeliveryStructure;
 import org.rutebanken.netex.model.Site_VersionFrameStructure;
+import org.rutebanken.netex.model.TopographicPlace;
 import org.rutebanken.netex.validation.NeTExValidator;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamReader;
 import java.io.File;
 import java.io.FileInputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Collectors;
 
 import static javax.xml.bind.JAXBContext.newInstance;
 
@@ -61,6 +68,43 @@ public class TopographicPlaceConverterTest {
     }
 
 
+    @Test
+    public void testParallelCompactMarshallingKeepsOrder() throws Exception {
+        String filteredFilePath = "target/filtered-fylker-parallel.geojson";
+        new FeatureJSONFilter("src/test/resources/no/entur/kakka/geocoder/geojson/fylker.geojson", filteredFilePath, "fylkesnr", "area").filter();
+
+        String sequentialPath = "target/adm-units-sequential.xml";
+        converter.toNetexFile(new GeoJsonCollectionTopographicPlaceReader(new GeojsonFeatureWrapperFactory(null), new File(filteredFilePath)), sequentialPath);
+
+        TopographicPlaceConverter parallelConverter = new TopographicPlaceConverter("CET", 2, 3, 2, false);
+        String parallelPath = "target/adm-units-parallel.xml";
+        try {
+            parallelConverter.toNetexFile(new GeoJsonCollectionTopographicPlaceReader(new GeojsonFeatureWrapperFactory(null), new File(filteredFilePath)), parallelPath);
+        } finally {
+            parallelConverter.shutdown();
+        }
+
+        Assert.assertEquals(topographicPlaceIds(validateNetexFile(sequentialPath)), topographicPlaceIds(validateNetexFile(parallelPath)));
+        Assert.assertTrue(new File(parallelPath).length() < new File(sequentialPath).length());
+    }
+
+    @Test
+    public void testConcurrentReadersAreNotRejectedWhenQueueIsFull() throws Exception {
+        int readers = 3;
+        int placesPerReader = 5000;
+        String targetPath = "target/many-places.xml";
+        converter.toNetexFile(new GeneratingTopographicPlaceReader(readers, placesPerReader), targetPath);
+
+        int count = 0;
+        XMLStreamReader xmlReader = XMLInputFactory.newInstance().createXMLStreamReader(new FileInputStream(new File(targetPath)));
+        while (xmlReader.hasNext()) {
+            if (xmlReader.next() == XMLStreamConstants.START_ELEMENT && "TopographicPlace".equals(xmlReader.getLocalName())) {
+                count++;
+            }
+        }
+        Assert.assertEquals(readers * placesPerReader, count);
+    }
+
     @Test
     public void testConvertPlaceOfInterestFromOsmPbf() throws Exception {
         List<String> filter = Arrays.asList("leisure=common", "naptan:indicator");
@@ -106,6 +150,61 @@ public class TopographicPlaceConverterTest {
 //    }
 
 
+    /**
+     * Reader split into a number of readers adding more places than the queue holds, using non-blocking add.
+     */
+    private static class GeneratingTopographicPlaceReader implements TopographicPlaceReader {
+
+        private final int readers;
+
+        private final int places;
+
+        private final int readerIndex;
+
+        GeneratingTopographicPlaceReader(int readers, int places) {
+            this(readers, places, 0);
+        }
+
+        private GeneratingTopographicPlaceReader(int readers, int places, int readerIndex) {
+            this.readers = readers;
+            this.places = places;
+            this.readerIndex = readerIndex;
+        }
+
+        @Override
+        public String getParticipantRef() {
+            return "TST";
+        }
+
+        @Override
+        public MultilingualString getDescription() {
+            return new MultilingualString().withLang("en").withValue("Generated places");
+        }
+
+        @Override
+        public void addToQueue(BlockingQueue<TopographicPlace> queue) {
+            for (int i = 0; i < places; i++) {
+                queue.add(new TopographicPlace().withVersion("any").withId("TST:TopographicPlace:" + readerIndex + "-" + i));
+            }
+        }
+
+        @Override
+        public Collection<TopographicPlaceReader> splitPerInput() {
+            List<TopographicPlaceReader> split = new ArrayList<>();
+            for (int i = 0; i < readers; i++) {
+                split.add(new GeneratingTopographicPlaceReader(readers, places, i));
+            }
+            return split;
+        }
+    }
+
+    private List<String> topographicPlaceIds(PublicationDeliveryStructure publicationDeliveryStructure) {
+        return publicationDeliveryStructure.getDataObjects().getCompositeFrameOrCommonFrame().stream().map(frame -> frame.getValue())
+                       .filter(frame -> frame instanceof Site_VersionFrameStructure && ((Site_VersionFrameStructure) frame).getTopographicPlaces() != null)
+                       .flatMap(frame -> ((Site_VersionFrameStructure) frame).getTopographicPlaces().getTopographicPlace().stream())
+                       .map(tp -> tp.getId()).collect(Collectors.toList());
+    }
+
     private PublicationDeliveryStructure validateNetexFile(String path) throws Exception {
         JAXBContext publicationDeliveryContext = newInstance(PublicationDeliveryStructure.class);
         Unmarshaller unmarshaller = publicationDeliveryContext.createUnmarshaller();
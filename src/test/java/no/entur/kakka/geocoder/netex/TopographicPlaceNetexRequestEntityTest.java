@@ -0,0 +1,59 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.netex;
+
+import no.entur.kakka.geocoder.netex.sosi.SosiTopographicPlaceReader;
+import no.entur.kakka.geocoder.sosi.SosiElementWrapperFactory;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+public class TopographicPlaceNetexRequestEntityTest {
+
+    @Test
+    public void testWriteGzippedPublicationDelivery() throws Exception {
+        TopographicPlaceReader reader = new SosiTopographicPlaceReader(new SosiElementWrapperFactory(), Arrays.asList(new File("src/test/resources/no/entur/kakka/geocoder/sosi/SosiTest.sos")));
+        TopographicPlaceNetexRequestEntity entity = new TopographicPlaceNetexRequestEntity(new TopographicPlaceConverter("CET"), reader);
+
+        Assert.assertTrue(entity.isChunked());
+        Assert.assertEquals("gzip", entity.getContentEncoding().getValue());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        entity.writeTo(outputStream);
+
+        String xml = IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(outputStream.toByteArray())), StandardCharsets.UTF_8);
+        Assert.assertTrue(xml.contains("PublicationDelivery"));
+        Assert.assertTrue(xml.contains("<TopographicPlace "));
+    }
+
+    @Test
+    public void testGetContent() throws Exception {
+        TopographicPlaceReader reader = new SosiTopographicPlaceReader(new SosiElementWrapperFactory(), Arrays.asList(new File("src/test/resources/no/entur/kakka/geocoder/sosi/SosiTest.sos")));
+        TopographicPlaceNetexRequestEntity entity = new TopographicPlaceNetexRequestEntity(new TopographicPlaceConverter("CET"), reader);
+
+        String xml = IOUtils.toString(new GZIPInputStream(entity.getContent()), StandardCharsets.UTF_8);
+        Assert.assertTrue(xml.contains("PublicationDelivery"));
+        Assert.assertTrue(xml.contains("<TopographicPlace "));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.netex.pbf;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class OsmTagMatcherTest {
+
+	private OsmTagMatcher matcher = new OsmTagMatcher(Arrays.asList("leisure", " amenity=test ", "key=start", "shop=", ""));
+
+	@Test
+	public void testMatchesAsKeyValuePrefix() {
+		Assert.assertTrue(matcher.matches("leisure", "park"));
+		Assert.assertTrue(matcher.matches("leisureX", "park"));
+		Assert.assertTrue(matcher.matches("amenity", "test"));
+		Assert.assertTrue(matcher.matches("key", "startOTHER"));
+		Assert.assertTrue(matcher.matches("shop", "bakery"));
+
+		Assert.assertFalse(matcher.matches("amenity", "tes"));
+		Assert.assertFalse(matcher.matches("amenityX", "test"));
+		Assert.assertFalse(matcher.matches("key", "other"));
+		Assert.assertFalse(matcher.matches("other", "leisure"));
+	}
+
+	@Test
+	public void testCountMatchedAndRejectedEntities() {
+		Map<String, String> matching = new HashMap<>();
+		matching.put("name", "1");
+		matching.put("amenity", "test");
+
+		Assert.assertTrue(matcher.matchesAny(matching));
+		Assert.assertFalse(matcher.matchesAny(Collections.singletonMap("name", "1")));
+		Assert.assertFalse(matcher.matchesAny(Collections.singletonMap("other", "other")));
+
+		Assert.assertEquals(1, matcher.getMatched());
+		Assert.assertEquals(2, matcher.getRejected());
+	}
+
+	@Test
+	public void testEmptyFilterMatchesNothing() {
+		Assert.assertFalse(new OsmTagMatcher(Arrays.asList("")).matches("key", "value"));
+		Assert.assertFalse(new OsmTagMatcher(null).matches("key", "value"));
+	}
+}
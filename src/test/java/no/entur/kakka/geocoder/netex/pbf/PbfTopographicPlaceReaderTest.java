@@ -16,37 +16,82 @@
 
 package no.entur.kakka.geocoder.netex.pbf;
 
-
+import com.vividsolutions.jts.geom.Coordinate;
 import org.junit.Assert;
 import org.junit.Test;
 import org.rutebanken.netex.model.IanaCountryTldEnumeration;
 import org.rutebanken.netex.model.TopographicPlace;
-import org.rutebanken.netex.model.TopographicPlaceTypeEnumeration;
 
 import java.io.File;
 import java.util.Arrays;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public class PbfTopographicPlaceReaderTest {
 
+	private static final File PBF_FILE = new File("src/test/resources/no/entur/kakka/geocoder/pbf/sample.pbf");
+
+	private static final List<String> FILTER = Arrays.asList("leisure=common", "naptan:indicator");
+
 	@Test
-	public void testParsePbfSampleFile() throws Exception {
-		PbfTopographicPlaceReader reader =
-				new PbfTopographicPlaceReader(Arrays.asList("leisure=common", "naptan:indicator"), IanaCountryTldEnumeration.NO,
-						                             new File("src/test/resources/no/entur/kakka/geocoder/pbf/sample.pbf"));
+	public void testSinglePassReadsSamePlacesAsTwoPass() throws Exception {
+		Map<String, TopographicPlace> twoPass = read(new PbfTopographicPlaceReader(FILTER, IanaCountryTldEnumeration.NO, PBF_FILE));
+		Map<String, TopographicPlace> singlePass = read(new PbfTopographicPlaceReader(FILTER, IanaCountryTldEnumeration.NO, PBF_FILE).withSinglePass(new File("target")));
 
-		BlockingQueue<TopographicPlace> queue = new LinkedBlockingDeque<>();
-		reader.addToQueue(queue);
+		Assert.assertFalse(twoPass.isEmpty());
+		Assert.assertEquals(twoPass.keySet(), singlePass.keySet());
+		twoPass.forEach((id, place) -> {
+			TopographicPlace other = singlePass.get(id);
+			Assert.assertEquals(place.getCentroid().getLocation().getLatitude().doubleValue(), other.getCentroid().getLocation().getLatitude().doubleValue(), 0.000001);
+			Assert.assertEquals(place.getCentroid().getLocation().getLongitude().doubleValue(), other.getCentroid().getLocation().getLongitude().doubleValue(), 0.000001);
+		});
+	}
+
+	@Test
+	public void testParallelDecodingReadsSamePlacesAsSequential() throws Exception {
+		ExecutorService executorService = Executors.newFixedThreadPool(4);
+		try {
+			Map<String, TopographicPlace> sequential = read(new PbfTopographicPlaceReader(FILTER, IanaCountryTldEnumeration.NO, PBF_FILE));
+			Map<String, TopographicPlace> parallel = read(new PbfTopographicPlaceReader(FILTER, IanaCountryTldEnumeration.NO, PBF_FILE)
+					                                              .withParallelDecoding(executorService, 2).withSinglePass(new File("target")));
+
+			Assert.assertFalse(sequential.isEmpty());
+			Assert.assertEquals(sequential.keySet(), parallel.keySet());
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testNodeLocationStoreLookup() throws Exception {
+		try (OsmNodeLocationStore store = new OsmNodeLocationStore(new File("target"))) {
+			store.put(3, 59.9, 10.7);
+			store.put(7, -33.85, 151.2);
+			store.put(8000000000L, 69.6, 18.9);
 
-		Assert.assertEquals(4, queue.size());
+			Assert.assertEquals(new Coordinate(10.7, 59.9), store.get(3));
+			Assert.assertEquals(new Coordinate(151.2, -33.85), store.get(7));
+			Assert.assertEquals(new Coordinate(18.9, 69.6), store.get(8000000000L));
+			Assert.assertNull(store.get(5));
+		}
+	}
 
-		for (TopographicPlace tp : queue) {
-			Assert.assertEquals(IanaCountryTldEnumeration.NO, tp.getCountryRef().getRef());
-			Assert.assertEquals(TopographicPlaceTypeEnumeration.PLACE_OF_INTEREST, tp.getTopographicPlaceType());
-			Assert.assertNotNull(tp.getName());
-			Assert.assertNotNull(tp.getCentroid());
+	@Test(expected = IllegalStateException.class)
+	public void testNodeLocationStoreRejectsUnsortedNodes() throws Exception {
+		try (OsmNodeLocationStore store = new OsmNodeLocationStore(new File("target"))) {
+			store.put(7, 59.9, 10.7);
+			store.put(3, 59.9, 10.7);
 		}
+	}
 
+	private Map<String, TopographicPlace> read(PbfTopographicPlaceReader reader) throws Exception {
+		LinkedBlockingQueue<TopographicPlace> queue = new LinkedBlockingQueue<>();
+		reader.addToQueue(queue);
+		return queue.stream().collect(Collectors.toMap(TopographicPlace::getId, Function.identity(), (a, b) -> a));
 	}
 }
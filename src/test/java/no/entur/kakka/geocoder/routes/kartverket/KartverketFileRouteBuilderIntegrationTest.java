@@ -19,6 +19,7 @@ package no.entur.kakka.geocoder.routes.kartverket;
 import com.amazonaws.util.StringInputStream;
 import no.entur.kakka.Constants;
 import no.entur.kakka.KakkaRouteBuilderIntegrationTestBase;
+import no.entur.kakka.domain.DownloadedFile;
 import no.entur.kakka.geocoder.services.KartverketService;
 import no.entur.kakka.repository.InMemoryBlobStoreRepository;
 import org.apache.camel.Exchange;
@@ -26,6 +27,7 @@ import org.apache.camel.Produce;
 import org.apache.camel.ProducerTemplate;
 import org.apache.camel.model.ModelCamelContext;
 import org.apache.camel.spi.IdempotentRepository;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 import org.junit.Ignore;
@@ -35,9 +37,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.when;
@@ -109,10 +111,12 @@ public class KartverketFileRouteBuilderIntegrationTest extends KakkaRouteBuilder
 		Assert.assertEquals(shouldChangeContent, Boolean.TRUE.equals(exchange.getIn().getHeader(Constants.CONTENT_CHANGED)));
 	}
 
-	private List<File> files(String... names) throws Exception {
-		List<File> files = Arrays.stream(names).map(n -> new File("target/files/" + n)).collect(Collectors.toList());
-		for (File file : files) {
-			FileUtils.writeStringToFile(file, file.getName());
+	private List<DownloadedFile> files(String... names) throws Exception {
+		List<DownloadedFile> files = new ArrayList<>();
+		for (String name : names) {
+			File file = new File("target/files/" + name);
+			FileUtils.writeStringToFile(file, name);
+			files.add(new DownloadedFile(file, DigestUtils.md5Hex(name), name.length()));
 		}
 		return files;
 	}
@@ -0,0 +1,53 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.routes.pelias;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+public class PeliasSourceStatisticsTest {
+
+    @Test
+    public void testCountBytesAndDocumentsForSource() throws Exception {
+        PeliasSourceStatistics statistics = new PeliasSourceStatistics("kartverket/addresses");
+
+        try (InputStream in = statistics.countBytes(new ByteArrayInputStream(new byte[100]))) {
+            Assert.assertEquals(100, IOUtils.toByteArray(in).length);
+        }
+        try (InputStream in = statistics.countBytes(new ByteArrayInputStream(new byte[50]))) {
+            in.read();
+            in.skip(9);
+        }
+        statistics.addDocuments(7);
+        statistics.addDocuments(3);
+        statistics.stop();
+
+        Assert.assertEquals(2, statistics.getFiles());
+        Assert.assertEquals(110, statistics.getBytes());
+        Assert.assertEquals(10, statistics.getDocuments());
+
+        long wallTimeMillis = statistics.getWallTimeMillis();
+        Assert.assertTrue(wallTimeMillis >= 0);
+        // Wall time is fixed once the source is stopped
+        Thread.sleep(20);
+        Assert.assertEquals(wallTimeMillis, statistics.getWallTimeMillis());
+    }
+}
@@ -81,7 +81,7 @@ public class PeliasUpdateESIndexRouteIntegrationTest extends KakkaRouteBuilderIn
 			}
 		});
 
-		context.getRouteDefinition("pelias-invoke-bulk-command").adviceWith(context, new AdviceWithRouteBuilder() {
+		context.getRouteDefinition("pelias-send-bulk-request").adviceWith(context, new AdviceWithRouteBuilder() {
 			@Override
 			public void configure() throws Exception {
 				interceptSendToEndpoint(elasticsearchScratchUrl + "/_bulk")
@@ -101,6 +101,7 @@ public class PeliasUpdateESIndexRouteIntegrationTest extends KakkaRouteBuilderIn
 
 		esScratchAdminIndexMock.expectedMessageCount(2);
 		esScratchMock.expectedMessageCount(4);
+		esScratchMock.whenAnyExchangeReceived(e -> e.getIn().setBody("{\"took\":1,\"errors\":false,\"items\":[{\"index\":{\"status\":201}}]}"));
 		context.start();
 
 		Exchange e = insertESDataTemplate.request("direct:insertElasticsearchIndexData", ex -> {
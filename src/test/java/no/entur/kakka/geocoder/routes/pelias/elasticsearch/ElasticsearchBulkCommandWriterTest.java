@@ -20,13 +20,17 @@ package no.entur.kakka.geocoder.routes.pelias.elasticsearch;
 import no.entur.kakka.geocoder.routes.pelias.json.GeoPoint;
 import no.entur.kakka.geocoder.routes.pelias.json.Parent;
 import no.entur.kakka.geocoder.routes.pelias.json.PeliasDocument;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 public class ElasticsearchBulkCommandWriterTest {
 
@@ -47,6 +51,24 @@ public class ElasticsearchBulkCommandWriterTest {
 		Assert.assertTrue(asString.contains("\"name\":{\"default\":\"møre0\""));
 	}
 
+	@Test
+	public void testWriteGzippedBulkRequestEntity() throws Exception {
+		List<ElasticsearchCommand> commands = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			commands.add(ElasticsearchCommand.peliasIndexCommand(doc("møre" + i)));
+		}
+
+		ElasticsearchBulkRequestEntity entity = new ElasticsearchBulkRequestEntity(commands, true);
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		entity.writeTo(outputStream);
+		String asString = IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(outputStream.toByteArray())), "utf-8");
+
+		Assert.assertEquals("gzip", entity.getContentEncoding().getValue());
+		Assert.assertEquals(commands.size() * 2, StringUtils.countMatches(asString, "\n"));
+		Assert.assertTrue(asString.startsWith("{\"index\":"));
+		Assert.assertTrue(asString.contains("\"name\":{\"default\":\"møre2\""));
+	}
+
 
 	private PeliasDocument doc(String name) {
 		PeliasDocument peliasDocument = new PeliasDocument("layer","sourceId");
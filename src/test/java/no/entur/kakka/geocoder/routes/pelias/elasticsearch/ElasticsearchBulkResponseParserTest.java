@@ -0,0 +1,95 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.routes.pelias.elasticsearch;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ElasticsearchBulkResponseParserTest {
+
+	private ElasticsearchBulkResponseParser parser = new ElasticsearchBulkResponseParser();
+
+	@Test
+	public void testParseResponseWithoutErrors() throws Exception {
+		String response = "{\"took\":30,\"errors\":false,\"items\":[" +
+				                  "{\"index\":{\"_index\":\"pelias\",\"_type\":\"address\",\"_id\":\"1\",\"_version\":1,\"result\":\"created\",\"_shards\":{\"total\":2,\"successful\":1,\"failed\":0},\"status\":201}}," +
+				                  "{\"delete\":{\"_index\":\"pelias\",\"_type\":\"address\",\"_id\":\"2\",\"status\":200}}]}";
+
+		ElasticsearchBulkResponse bulkResponse = parser.parse(IOUtils.toInputStream(response, "utf-8"));
+
+		Assert.assertEquals(2, bulkResponse.getItemCount());
+		Assert.assertEquals(2, bulkResponse.getSuccessCount());
+		Assert.assertTrue(bulkResponse.getFailures().isEmpty());
+	}
+
+	@Test
+	public void testDeleteOfMissingDocumentIsNotFailure() throws Exception {
+		String response = "{\"took\":3,\"errors\":false,\"items\":[" +
+				                  "{\"delete\":{\"_index\":\"pelias\",\"_type\":\"venue\",\"_id\":\"1\",\"result\":\"not_found\",\"status\":404}}," +
+				                  "{\"index\":{\"_index\":\"pelias\",\"_type\":\"venue\",\"_id\":\"2\",\"status\":404,\"error\":{\"type\":\"index_not_found_exception\",\"reason\":\"no such index\"}}}]}";
+
+		ElasticsearchBulkResponse bulkResponse = parser.parse(IOUtils.toInputStream(response, "utf-8"));
+
+		Assert.assertEquals(2, bulkResponse.getItemCount());
+		Assert.assertEquals(1, bulkResponse.getSuccessCount());
+		Assert.assertEquals(1, bulkResponse.getFailures().get(0).getPosition());
+	}
+
+	@Test
+	public void testParseResponseWithFailedItems() throws Exception {
+		String response = "{\"took\":30,\"errors\":true,\"items\":[" +
+				                  "{\"index\":{\"_index\":\"pelias\",\"_type\":\"address\",\"_id\":\"1\",\"status\":201}}," +
+				                  "{\"index\":{\"_index\":\"pelias\",\"_type\":\"address\",\"_id\":\"2\",\"status\":429,\"error\":{\"type\":\"es_rejected_execution_exception\",\"reason\":\"rejected execution\"}}}," +
+				                  "{\"index\":{\"_index\":\"pelias\",\"_type\":\"address\",\"_id\":\"3\",\"status\":400,\"error\":{\"type\":\"mapper_parsing_exception\",\"reason\":\"failed to parse\",\"caused_by\":{\"type\":\"x\"}}}}," +
+				                  "{\"index\":{\"_index\":\"pelias\",\"_type\":\"address\",\"_id\":\"4\",\"status\":503,\"error\":\"EsRejectedExecutionException[rejected]\"}}]}";
+
+		ElasticsearchBulkResponse bulkResponse = parser.parse(IOUtils.toInputStream(response, "utf-8"));
+
+		Assert.assertEquals(4, bulkResponse.getItemCount());
+		Assert.assertEquals(1, bulkResponse.getSuccessCount());
+		Assert.assertEquals(3, bulkResponse.getFailures().size());
+
+		ElasticsearchBulkResponse.ItemFailure rejected = bulkResponse.getFailures().get(0);
+		Assert.assertEquals(1, rejected.getPosition());
+		Assert.assertTrue(rejected.isRetryable());
+
+		ElasticsearchBulkResponse.ItemFailure invalid = bulkResponse.getFailures().get(1);
+		Assert.assertEquals(2, invalid.getPosition());
+		Assert.assertEquals("mapper_parsing_exception", invalid.getErrorType());
+		Assert.assertEquals("failed to parse", invalid.getErrorReason());
+		Assert.assertFalse(invalid.isRetryable());
+
+		ElasticsearchBulkResponse.ItemFailure legacyError = bulkResponse.getFailures().get(2);
+		Assert.assertEquals(3, legacyError.getPosition());
+		Assert.assertEquals("EsRejectedExecutionException[rejected]", legacyError.getErrorReason());
+		Assert.assertTrue(legacyError.isRetryable());
+	}
+
+	@Test
+	public void testOnlyLegacyStringErrorWithRejectedExecutionIsRetryable() throws Exception {
+		String response = "{\"took\":30,\"errors\":true,\"items\":[" +
+				                  "{\"index\":{\"_index\":\"pelias\",\"_type\":\"address\",\"_id\":\"1\",\"status\":400,\"error\":\"MapperParsingException[failed to parse]\"}}," +
+				                  "{\"index\":{\"_index\":\"pelias\",\"_type\":\"address\",\"_id\":\"2\",\"status\":500,\"error\":\"RemoteTransportException[[node][inet[/10.0.0.1:9300]][bulk/shard]]; nested: EsRejectedExecutionException[rejected execution (queue capacity 50)]; \"}}]}";
+
+		ElasticsearchBulkResponse bulkResponse = parser.parse(IOUtils.toInputStream(response, "utf-8"));
+
+		Assert.assertEquals(2, bulkResponse.getFailures().size());
+		Assert.assertFalse(bulkResponse.getFailures().get(0).isRetryable());
+		Assert.assertTrue(bulkResponse.getFailures().get(1).isRetryable());
+	}
+}
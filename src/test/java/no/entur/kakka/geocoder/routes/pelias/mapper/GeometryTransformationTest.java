@@ -42,6 +42,36 @@ public class GeometryTransformationTest {
 		assertCoordinates(GeometryTransformer.fromUTM(factory.createPoint(new Coordinate(99999, 99999)), "32"), 5.41, 0.90);
 	}
 
+	@Test
+	public void testConvertCoordinateArrayInPlace() throws Exception {
+		GeometryFactory factory = new GeometryFactory();
+		double[] coordinates = new double[]{0, 0, 99999, 99999, 597423, 6643848};
+		GeometryTransformer.fromUTM(coordinates, "33");
+
+		Assert.assertEquals(10.51, coordinates[0], 0.1);
+		Assert.assertEquals(0, coordinates[1], 0.1);
+		Assert.assertEquals(11.41, coordinates[2], 0.1);
+		Assert.assertEquals(0.90, coordinates[3], 0.1);
+
+		Coordinate expected = GeometryTransformer.fromUTM(factory.createPoint(new Coordinate(597423, 6643848)), "33").getCoordinate();
+		Assert.assertEquals(expected.x, coordinates[4], 0.0000001);
+		Assert.assertEquals(expected.y, coordinates[5], 0.0000001);
+	}
+
+	@Test
+	public void testConvertCoordinateArrayWithPointFarOutsideZone() throws Exception {
+		double[] points = new double[]{597423, 6643848, 90000000, 90000000, 99999, 99999};
+		double[] coordinates = points.clone();
+		GeometryTransformer.fromUTM(coordinates, "33");
+
+		// Points transformed before a failing point in the batch must not be transformed twice by the fallback
+		for (int i = 0; i < points.length; i += 2) {
+			Coordinate expected = GeometryTransformer.fromUTM(new Coordinate(points[i], points[i + 1]), "33");
+			Assert.assertEquals(expected.x, coordinates[i], 0.0000001);
+			Assert.assertEquals(expected.y, coordinates[i + 1], 0.0000001);
+		}
+	}
+
 	private void assertCoordinates(Geometry geometry, double expectedX, double expectedY) {
 		Coordinate coordinate = geometry.getCoordinate();
 		Assert.assertEquals(expectedX, coordinate.x, 0.1);
@@ -57,6 +57,12 @@ public class PeliasIndexValidCommandFilterTest {
 		Assert.assertFalse(filter.isValid(new ElasticsearchCommand()));
 	}
 
+	@Test
+	public void testDeleteCommandIsValid() {
+		Assert.assertTrue(filter.isValid(ElasticsearchCommand.peliasDeleteCommand("venue", "NSR:StopPlace:1")));
+		Assert.assertFalse(filter.isValid(ElasticsearchCommand.peliasDeleteCommand("venue", null)));
+	}
+
 	@Test
 	public void testIndexCommandWithoutIndexNameIsInvalid() {
 		ElasticsearchCommand command = new ElasticsearchCommand();
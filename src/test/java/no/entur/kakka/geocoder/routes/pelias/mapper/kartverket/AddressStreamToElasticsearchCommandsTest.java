@@ -29,8 +29,10 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.FileInputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -58,6 +60,29 @@ public class AddressStreamToElasticsearchCommandsTest {
         assertKnownAddress(knownDocument);
     }
 
+    @Test
+    public void testStreamAddressesToIndexCommandsInBatches() throws Exception {
+        AddressStreamToElasticSearchCommands transformer = new AddressStreamToElasticSearchCommands(new AddressToPeliasMapper(ADDRESS_POPULARITY), new AddressToStreetMapper(ADDRESS_STREET_POPULARITY));
+
+        Iterator<List<ElasticsearchCommand>> batches = transformer
+                                                               .transformInBatches(new FileInputStream("src/test/resources/no/entur/kakka/geocoder/csv/addresses.csv"), 10);
+
+        List<ElasticsearchCommand> commands = new ArrayList<>();
+        while (batches.hasNext()) {
+            List<ElasticsearchCommand> batch = batches.next();
+            Assert.assertTrue(batch.size() <= 10);
+            commands.addAll(batch);
+        }
+
+        Assert.assertEquals(37, commands.size());
+        commands.forEach(c -> assertCommand(c));
+
+        List<PeliasDocument> documents = commands.stream().map(c -> (PeliasDocument) c.getSource()).collect(Collectors.toList());
+        Assert.assertEquals("Should be 9 streets", 9, documents.stream().filter(d -> PeliasDocument.DEFAULT_SOURCE.equals(d.getSource())).collect(Collectors.toList()).size());
+
+        PeliasDocument knownDocument = documents.stream().filter(d -> d.getSourceId().endsWith("87033123")).collect(Collectors.toList()).get(0);
+        assertKnownAddress(knownDocument);
+    }
 
     // 87033123;Vegadresse;0125;1850;Bergheimveien;Bergheimveien;14;A;57;14;0;0;;;;;23;6607447.1;293546.2;508;KIRKÅS/ENGA;02030103;Mysen;121;Mysen;1;EIDSBERG;1850;MYSEN;
     private void assertKnownAddress(PeliasDocument known) throws Exception {
@@ -0,0 +1,61 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.routes.pelias.mapper.kartverket;
+
+import no.entur.kakka.geocoder.routes.pelias.json.AddressParts;
+import no.entur.kakka.geocoder.routes.pelias.json.GeoPoint;
+import no.entur.kakka.geocoder.routes.pelias.json.Parent;
+import no.entur.kakka.geocoder.routes.pelias.json.PeliasDocument;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class AddressToStreetMapperTest {
+
+	@Test
+	public void testMedianAddressWithSameNumberIsChosenByName() {
+		AddressToStreetMapper.StreetAccumulator accumulator = new AddressToStreetMapper(2).createStreetAccumulator();
+		accumulator.add(address("1", "Storgata 12B", "12", 60.2));
+		accumulator.add(address("2", "Storgata 12A", "12", 60.1));
+		accumulator.add(address("3", "Storgata 14", "14", 60.3));
+
+		List<PeliasDocument> streets = accumulator.createStreetPeliasDocuments();
+
+		Assert.assertEquals(1, streets.size());
+		PeliasDocument street = streets.get(0);
+		Assert.assertEquals("0301-Storgata", street.getSourceId());
+		// Ordered 12A, 12B, 14 regardless of the order the addresses are read in
+		Assert.assertEquals(60.2, street.getCenterPoint().getLat(), 0.0001);
+		Assert.assertEquals(Arrays.asList("street"), street.getCategory());
+	}
+
+	private PeliasDocument address(String id, String name, String number, double lat) {
+		PeliasDocument address = new PeliasDocument("address", id);
+		address.setDefaultNameAndPhrase(name);
+		AddressParts addressParts = new AddressParts();
+		addressParts.setStreet("Storgata");
+		addressParts.setNumber(number);
+		address.setAddressParts(addressParts);
+		address.setCenterPoint(new GeoPoint(lat, 10.7));
+		Parent parent = new Parent();
+		parent.setLocalityId("0301");
+		address.setParent(parent);
+		return address;
+	}
+}
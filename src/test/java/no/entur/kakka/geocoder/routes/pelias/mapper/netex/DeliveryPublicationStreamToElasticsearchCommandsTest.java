@@ -23,7 +23,9 @@ import no.entur.kakka.geocoder.routes.pelias.mapper.netex.boost.StopPlaceBoostCo
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.stream.Collectors;
@@ -65,6 +67,126 @@ public class DeliveryPublicationStreamToElasticsearchCommandsTest {
         assertNotMapped(commands, "NSR:TopographicPlace:725");
     }
 
+    @Test
+    public void testTransformWithoutGroupsOfStopPlaces() throws Exception {
+        DeliveryPublicationStreamToElasticsearchCommands mapper =
+                new DeliveryPublicationStreamToElasticsearchCommands(new StopPlaceBoostConfiguration("{\"defaultValue\":1000, \"stopTypeFactors\":{\"airport\":{\"*\":3},\"onstreetBus\":{\"*\":2}}}"),
+                                                                            POI_POPULARITY, Arrays.asList("leisure=stadium", "building=church"), 1.0, false);
+
+        // Transform twice to verify that the shared JAXBContext may be reused
+        mapper.transform(new FileInputStream("src/test/resources/no/entur/kakka/geocoder/netex/tiamat-export.xml"));
+        Collection<ElasticsearchCommand> commands = mapper
+                                                            .transform(new FileInputStream("src/test/resources/no/entur/kakka/geocoder/netex/tiamat-export.xml"));
+
+        Assert.assertEquals(10, commands.size());
+        assertNotMapped(commands, "NSR:GroupOfStopPlaces:1");
+        assertKnownMultimodalStopPlaceParent(byId(commands, "NSR:StopPlace:1000"));
+        assertKnownMultimodalStopPlaceChild(byId(commands, "NSR:StopPlace:1000a"));
+    }
+
+    @Test
+    public void testTransformChanges() throws Exception {
+        DeliveryPublicationStreamToElasticsearchCommands mapper =
+                new DeliveryPublicationStreamToElasticsearchCommands(new StopPlaceBoostConfiguration("{\"defaultValue\":1000, \"stopTypeFactors\":{\"airport\":{\"*\":3},\"onstreetBus\":{\"*\":2}}}"),
+                                                                            POI_POPULARITY, Arrays.asList("leisure=stadium", "building=church"), 1.0, true);
+
+        Collection<ElasticsearchCommand> commands = mapper
+                                                            .transformChanges(new FileInputStream("src/test/resources/no/entur/kakka/geocoder/netex/tiamat-export.xml"), 3);
+
+        Collection<String> deletedIds = commands.stream().filter(c -> c.getDelete() != null).map(c -> c.getDelete().getId()).collect(Collectors.toList());
+        Collection<String> indexedIds = commands.stream().filter(c -> c.getIndex() != null).map(c -> c.getIndex().getId()).collect(Collectors.toList());
+
+        // Stop place with alias is indexed, surplus alias document is deleted
+        Assert.assertTrue(indexedIds.containsAll(Arrays.asList("NSR:StopPlace:39231", "NSR:StopPlace:39231-1")));
+        Assert.assertTrue(deletedIds.contains("NSR:StopPlace:39231-2"));
+        Assert.assertFalse(deletedIds.contains("NSR:StopPlace:39231"));
+
+        // Stop places no longer valid are deleted
+        Assert.assertTrue(deletedIds.containsAll(Arrays.asList("NSR:StopPlace:1001", "NSR:StopPlace:1001-1", "NSR:StopPlace:1001-2")));
+        Assert.assertTrue(deletedIds.contains("NSR:StopPlace:1003"));
+        assertNotMapped(commands.stream().filter(c -> c.getIndex() != null).collect(Collectors.toList()), "NSR:StopPlace:1003");
+    }
+
+    @Test
+    public void testTransformMapsChildrenOfParentWithoutParentKey() throws Exception {
+        DeliveryPublicationStreamToElasticsearchCommands mapper =
+                new DeliveryPublicationStreamToElasticsearchCommands(new StopPlaceBoostConfiguration("{\"defaultValue\":1000, \"stopTypeFactors\":{\"airport\":{\"*\":3},\"onstreetBus\":{\"*\":2}}}"),
+                                                                            POI_POPULARITY, Arrays.asList("leisure=stadium", "building=church"), 1.0, true);
+
+        Collection<ElasticsearchCommand> commands = mapper.transform(publicationDelivery(stopPlace("NSR:StopPlace:2000", "Parent without key", null),
+                stopPlace("NSR:StopPlace:2000a", "Child of parent without key", "NSR:StopPlace:2000")));
+
+        Assert.assertEquals(2, commands.size());
+        Assert.assertEquals("Parent without key", byId(commands, "NSR:StopPlace:2000").getDefaultName());
+        Assert.assertEquals("Child of parent without key", byId(commands, "NSR:StopPlace:2000a").getDefaultName());
+    }
+
+    @Test
+    public void testTransformChangesWithChildOnly() throws Exception {
+        DeliveryPublicationStreamToElasticsearchCommands mapper =
+                new DeliveryPublicationStreamToElasticsearchCommands(new StopPlaceBoostConfiguration("{\"defaultValue\":1000, \"stopTypeFactors\":{\"airport\":{\"*\":3},\"onstreetBus\":{\"*\":2}}}"),
+                                                                            POI_POPULARITY, Arrays.asList("leisure=stadium", "building=church"), 1.0, true);
+
+        Collection<ElasticsearchCommand> commands = mapper.transformChanges(publicationDelivery(stopPlace("NSR:StopPlace:3000a", "Child without parent in change log", "NSR:StopPlace:3000")), 3);
+
+        // Child can not be mapped without its parent, and must not replace the child document in the live index
+        Assert.assertTrue(commands.isEmpty());
+    }
+
+    @Test
+    public void testTransformChangesWithParentOnly() throws Exception {
+        DeliveryPublicationStreamToElasticsearchCommands mapper =
+                new DeliveryPublicationStreamToElasticsearchCommands(new StopPlaceBoostConfiguration("{\"defaultValue\":1000, \"stopTypeFactors\":{\"airport\":{\"*\":3},\"onstreetBus\":{\"*\":2}}}"),
+                                                                            POI_POPULARITY, Arrays.asList("leisure=stadium", "building=church"), 1.0, true);
+
+        Collection<ElasticsearchCommand> commands = mapper.transformChanges(publicationDelivery(parentStopPlace("NSR:StopPlace:3000", "Parent without children in change log")), 3);
+
+        Assert.assertTrue(commands.isEmpty());
+    }
+
+    @Test
+    public void testTransformChangesWithWholeHierarchy() throws Exception {
+        DeliveryPublicationStreamToElasticsearchCommands mapper =
+                new DeliveryPublicationStreamToElasticsearchCommands(new StopPlaceBoostConfiguration("{\"defaultValue\":1000, \"stopTypeFactors\":{\"airport\":{\"*\":3},\"onstreetBus\":{\"*\":2}}}"),
+                                                                            POI_POPULARITY, Arrays.asList("leisure=stadium", "building=church"), 1.0, true);
+
+        Collection<ElasticsearchCommand> commands = mapper.transformChanges(publicationDelivery(parentStopPlace("NSR:StopPlace:3000", "Parent"),
+                stopPlace("NSR:StopPlace:3000a", "Child", "NSR:StopPlace:3000")), 3);
+
+        Collection<ElasticsearchCommand> indexCommands = commands.stream().filter(c -> c.getIndex() != null).collect(Collectors.toList());
+        Assert.assertEquals(StopPlaceToPeliasMapper.SOURCE_PARENT_STOP_PLACE, byId(indexCommands, "NSR:StopPlace:3000").getSource());
+        Assert.assertEquals(StopPlaceToPeliasMapper.SOURCE_CHILD_STOP_PLACE, byId(indexCommands, "NSR:StopPlace:3000a").getSource());
+        // Child name is an alias for the parent and the parent name an alias for the child
+        Assert.assertEquals("Child", byId(indexCommands, "NSR:StopPlace:3000-1").getDefaultName());
+        Assert.assertEquals("Parent", byId(indexCommands, "NSR:StopPlace:3000a-1").getDefaultName());
+
+        Collection<String> deletedIds = commands.stream().filter(c -> c.getDelete() != null).map(c -> c.getDelete().getId()).collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList("NSR:StopPlace:3000-2", "NSR:StopPlace:3000a-2"), deletedIds.stream().sorted().collect(Collectors.toList()));
+    }
+
+    private ByteArrayInputStream publicationDelivery(String... stopPlaces) {
+        String xml = "<PublicationDelivery xmlns=\"http://www.netex.org.uk/netex\" version=\"any\"><dataObjects><SiteFrame version=\"any\" id=\"NSR:SiteFrame:1\"><stopPlaces>"
+                             + String.join("", stopPlaces) + "</stopPlaces></SiteFrame></dataObjects></PublicationDelivery>";
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String parentStopPlace(String id, String name) {
+        return stopPlace(id, name, null, "<keyList><KeyValue><Key>IS_PARENT_STOP_PLACE</Key><Value>true</Value></KeyValue></keyList>");
+    }
+
+    private String stopPlace(String id, String name, String parentRef) {
+        return stopPlace(id, name, parentRef, "");
+    }
+
+    private String stopPlace(String id, String name, String parentRef, String keyList) {
+        return "<StopPlace version=\"1\" id=\"" + id + "\">" + keyList + "<Name lang=\"nor\">" + name + "</Name>"
+                       + "<Centroid><Location><Longitude>10.75</Longitude><Latitude>59.91</Latitude></Location></Centroid>"
+                       + (parentRef == null ? "" : "<ParentSiteRef ref=\"" + parentRef + "\" version=\"1\"/>")
+                       + "<StopPlaceType>onstreetBus</StopPlaceType>"
+                       + "<quays><Quay version=\"1\" id=\"" + id.replace("StopPlace", "Quay") + "\"><Centroid><Location><Longitude>10.75</Longitude><Latitude>59.91</Latitude></Location></Centroid></Quay></quays>"
+                       + "</StopPlace>";
+    }
+
     private PeliasDocument byId(Collection<ElasticsearchCommand> commands, String sourceId) {
         return commands.stream().map(c -> (PeliasDocument) c.getSource()).filter(d -> d.getSourceId().equals(sourceId)).collect(Collectors.toList()).get(0);
     }
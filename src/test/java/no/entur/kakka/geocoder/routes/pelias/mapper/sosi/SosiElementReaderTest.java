@@ -0,0 +1,79 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.routes.pelias.mapper.sosi;
+
+import no.entur.kakka.geocoder.routes.pelias.elasticsearch.ElasticsearchCommand;
+import no.entur.kakka.geocoder.routes.pelias.json.PeliasDocument;
+import no.entur.kakka.geocoder.routes.pelias.mapper.kartverket.KartverketSosiStreamToElasticsearchCommands;
+import no.entur.kakka.geocoder.sosi.SosiElementProperties;
+import no.entur.kakka.geocoder.sosi.SosiElementReader;
+import no.entur.kakka.geocoder.sosi.SosiElementWrapperFactory;
+import no.vegvesen.nvdb.sosi.document.SosiElement;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class SosiElementReaderTest {
+
+    private static final String PLACE_NAMES_FILE = "src/test/resources/no/entur/kakka/geocoder/sosi/placeNames.sos";
+
+    @Test
+    public void readAllElements() throws Exception {
+        List<SosiElement> elements = new ArrayList<>();
+        try (SosiElementReader reader = new SosiElementReader(new FileInputStream(PLACE_NAMES_FILE))) {
+            Assert.assertEquals("HODE", reader.getHead().getName());
+            SosiElement element;
+            while ((element = reader.next()) != null) {
+                elements.add(element);
+            }
+        }
+
+        Assert.assertEquals(2, elements.size());
+        elements.forEach(e -> Assert.assertEquals("SVERM", e.getName()));
+    }
+
+    @Test
+    public void filterByType() throws Exception {
+        Collection<ElasticsearchCommand> commands = new KartverketSosiStreamToElasticsearchCommands(new SosiElementWrapperFactory(), 1)
+                                                            .transform(new FileInputStream(PLACE_NAMES_FILE), kv -> "NAVNEOBJEKTTYPE".equals(kv.getKey()) && "industriområde".equals(kv.getValue()));
+
+        Assert.assertEquals(1, commands.size());
+
+        Assert.assertEquals(((PeliasDocument) commands.iterator().next().getSource()).getDefaultName(), "Stornesodden");
+    }
+
+    @Test
+    public void readElementsInDeclaredCharacterSet() throws Exception {
+        String sosi = ".HODE\n..TEGNSETT ISO8859-1\n..TRANSPAR\n...KOORDSYS 23\n...ORIGO-NØ 0  0\n...ENHET 0.01\n"
+                              + ".PUNKT 1:\n..OBJTYPE Sted\n..NAVN \"Bærum\"\n..NØ\n100 200\n"
+                              + ".PUNKT 2:\n..OBJTYPE Sted\n..NAVN \"Ålesund\"\n..NØ\n300 400\n.SLUTT\n";
+
+        try (SosiElementReader reader = new SosiElementReader(new ByteArrayInputStream(sosi.getBytes(StandardCharsets.ISO_8859_1)),
+                                                                     kv -> "NAVN".equals(kv.getKey()) && "\"Ålesund\"".equals(kv.getValue()))) {
+            SosiElement element = reader.next();
+            Assert.assertEquals("Ålesund", new SosiElementProperties(element).get("NAVN"));
+            Assert.assertNull(reader.next());
+        }
+    }
+
+}
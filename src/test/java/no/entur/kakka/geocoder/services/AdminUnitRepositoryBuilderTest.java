@@ -0,0 +1,84 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import no.entur.kakka.geocoder.routes.pelias.elasticsearch.ElasticsearchCommand;
+import no.entur.kakka.geocoder.routes.pelias.mapper.kartverket.KartverketSosiStreamToElasticsearchCommands;
+import no.entur.kakka.geocoder.sosi.SosiElementWrapperFactory;
+import no.entur.kakka.repository.InMemoryBlobStoreRepository;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class AdminUnitRepositoryBuilderTest {
+
+    private static final String SOSI_FILE = "src/test/resources/no/entur/kakka/geocoder/sosi/SosiTest.sos";
+
+    private AdminUnitRepositoryBuilder builder;
+
+    private InMemoryBlobStoreRepository blobStoreRepository;
+
+    private SosiElementWrapperFactory sosiElementWrapperFactory = new SosiElementWrapperFactory();
+
+    private KartverketSosiStreamToElasticsearchCommands sosiCommands = new KartverketSosiStreamToElasticsearchCommands(sosiElementWrapperFactory, 4);
+
+    @Before
+    public void setUp() throws Exception {
+        blobStoreRepository = new InMemoryBlobStoreRepository();
+        blobStoreRepository.uploadBlob("kartverket/administrativeUnits/SosiTest.sos", new FileInputStream(SOSI_FILE), false);
+
+        builder = new AdminUnitRepositoryBuilder();
+        builder.repository = blobStoreRepository;
+        ReflectionTestUtils.setField(builder, "cacheMaxSize", 30000);
+        ReflectionTestUtils.setField(builder, "blobStoreSubdirectoryForKartverket", "kartverket");
+        ReflectionTestUtils.setField(builder, "localityCellPrecision", 6);
+        ReflectionTestUtils.setField(builder, "localityCellCacheMaxSize", 1000L);
+        ReflectionTestUtils.setField(builder, "snapshotEnabled", true);
+        ReflectionTestUtils.setField(builder, "blobStoreSubdirectoryForSnapshots", "kartverket/adminUnitSnapshots");
+        ReflectionTestUtils.setField(builder, "sosiElementWrapperFactory", sosiElementWrapperFactory);
+    }
+
+    @Test
+    public void testAdminUnitDocumentsFromRepositoryMatchDocumentsFromSosiStream() throws Exception {
+        List<String> expected = toJson(sosiCommands.transform(new FileInputStream(SOSI_FILE)));
+        Assert.assertFalse(expected.isEmpty());
+
+        // Built from the admin unit blobs
+        Assert.assertEquals(expected, toJson(sosiCommands.transform(builder.build().getAdminUnits())));
+        Assert.assertEquals(1, blobStoreRepository.listBlobs("kartverket/adminUnitSnapshots/").getFiles().size());
+
+        // Restored from the snapshot written by the first build
+        Assert.assertEquals(expected, toJson(sosiCommands.transform(builder.build().getAdminUnits())));
+    }
+
+    private List<String> toJson(Collection<ElasticsearchCommand> commands) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<String> documents = new ArrayList<>();
+        for (ElasticsearchCommand command : commands) {
+            documents.add(objectMapper.writeValueAsString(command.getSource()));
+        }
+        return documents.stream().sorted().collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.geocoder.services;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+import no.entur.kakka.geocoder.netex.TopographicPlaceAdapter;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class AdminUnitSnapshotTest {
+
+    private GeometryFactory geometryFactory = new GeometryFactory();
+
+    @Test
+    public void testSnapshotRoundTrip() throws Exception {
+        TopographicPlaceAdapter county = adminUnit("03", TopographicPlaceAdapter.Type.COUNTY, "Oslo", null, null);
+        TopographicPlaceAdapter locality = adminUnit("0301", TopographicPlaceAdapter.Type.LOCALITY, "Oslo kommune", "03", square(10, 59, 1));
+        Mockito.when(locality.getAlternativeNames()).thenReturn(Collections.singletonMap("sme", "Oslo gielda"));
+        Mockito.when(locality.getCategories()).thenReturn(Arrays.asList("kommune"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AdminUnitSnapshot.write(Arrays.asList(county, locality), out);
+        List<TopographicPlaceAdapter> restored = AdminUnitSnapshot.read(new ByteArrayInputStream(out.toByteArray()));
+
+        Assert.assertEquals(2, restored.size());
+        assertEqual(county, restored.get(0));
+        assertEqual(locality, restored.get(1));
+        Assert.assertEquals("Oslo gielda", restored.get(1).getAlternativeNames().get("sme"));
+        Assert.assertEquals(Arrays.asList("kommune"), restored.get(1).getCategories());
+        Assert.assertNull(restored.get(0).getCategories());
+    }
+
+    @Test
+    public void testRestoredLocalitiesCanBeIndexed() throws Exception {
+        TopographicPlaceAdapter locality = adminUnit("0301", TopographicPlaceAdapter.Type.LOCALITY, "Oslo kommune", "03", square(10, 59, 1));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AdminUnitSnapshot.write(Arrays.asList(locality), out);
+        LocalitySpatialIndex index = new LocalitySpatialIndex(AdminUnitSnapshot.read(new ByteArrayInputStream(out.toByteArray())));
+
+        Assert.assertEquals("0301", index.getLocality(geometryFactory.createPoint(new Coordinate(10.5, 59.5))).getId());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadInvalidSnapshotFails() throws Exception {
+        AdminUnitSnapshot.read(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+    }
+
+    private void assertEqual(TopographicPlaceAdapter expected, TopographicPlaceAdapter actual) {
+        Assert.assertEquals(expected.getId(), actual.getId());
+        Assert.assertEquals(expected.getType(), actual.getType());
+        Assert.assertEquals(expected.getName(), actual.getName());
+        Assert.assertEquals(expected.getParentId(), actual.getParentId());
+        Assert.assertEquals(expected.getCountryRef(), actual.getCountryRef());
+        Assert.assertEquals(expected.isValid(), actual.isValid());
+        if (expected.getDefaultGeometry() == null) {
+            Assert.assertNull(actual.getDefaultGeometry());
+        } else {
+            Assert.assertTrue(expected.getDefaultGeometry().equalsExact(actual.getDefaultGeometry()));
+        }
+    }
+
+    private TopographicPlaceAdapter adminUnit(String id, TopographicPlaceAdapter.Type type, String name, String parentId, Polygon polygon) {
+        TopographicPlaceAdapter adminUnit = Mockito.mock(TopographicPlaceAdapter.class);
+        Mockito.when(adminUnit.getId()).thenReturn(id);
+        Mockito.when(adminUnit.getType()).thenReturn(type);
+        Mockito.when(adminUnit.getName()).thenReturn(name);
+        Mockito.when(adminUnit.getParentId()).thenReturn(parentId);
+        Mockito.when(adminUnit.getCountryRef()).thenReturn("NO");
+        Mockito.when(adminUnit.isValid()).thenReturn(true);
+        Mockito.when(adminUnit.getDefaultGeometry()).thenReturn(polygon);
+        return adminUnit;
+    }
+
+    private Polygon square(double x, double y, double size) {
+        return geometryFactory.createPolygon(new Coordinate[]{new Coordinate(x, y), new Coordinate(x + size, y),
+                                                                     new Coordinate(x + size, y + size), new Coordinate(x, y + size), new Coordinate(x, y)});
+    }
+}
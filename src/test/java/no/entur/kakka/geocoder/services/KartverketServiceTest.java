@@ -17,16 +17,26 @@
 package no.entur.kakka.geocoder.services;
 
 
+import no.entur.kakka.domain.DownloadedFile;
 import no.jskdata.Downloader;
 import no.jskdata.GeoNorgeDownloadAPI;
 import no.jskdata.KartverketDownload;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
 public class KartverketServiceTest {
 
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 	@Test
 	public void testAPIDownloaderIsUsedForUUIDs() {
 		Downloader downloader = new KartverketService().getDownloader(UUID.randomUUID().toString(), null);
@@ -38,4 +48,16 @@ public class KartverketServiceTest {
 		Downloader downloader = new KartverketService().getDownloader("not-a-uuid", null);
 		Assert.assertTrue(downloader instanceof KartverketDownload);
 	}
+
+	@Test
+	public void testDownloadedContentIsWrittenWithSizeAndDigest() throws Exception {
+		String content = "Kartverket dataset content";
+		DownloadedFile downloadedFile = new KartverketService().writeToFile("dataset.zip", new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+				temporaryFolder.getRoot().getAbsolutePath());
+
+		Assert.assertEquals("dataset.zip", downloadedFile.getName());
+		Assert.assertEquals(content.length(), downloadedFile.getSize());
+		Assert.assertEquals(DigestUtils.md5Hex(content), downloadedFile.getDigest());
+		Assert.assertEquals(content, FileUtils.readFileToString(downloadedFile.getFile(), StandardCharsets.UTF_8));
+	}
 }
@@ -0,0 +1,115 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.services;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import no.entur.kakka.geocoder.netex.TopographicPlaceAdapter;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class LocalitySpatialIndexTest {
+
+    private GeometryFactory geometryFactory = new GeometryFactory();
+
+    @Test
+    public void testLookupFindsCoveringLocality() {
+        TopographicPlaceAdapter west = locality("0101", square(0, 0, 10));
+        TopographicPlaceAdapter east = locality("0102", square(10, 0, 10));
+        TopographicPlaceAdapter noGeometry = locality("0103", null);
+
+        LocalitySpatialIndex index = new LocalitySpatialIndex(Arrays.asList(noGeometry, west, east));
+
+        Assert.assertEquals(2, index.size());
+        Assert.assertEquals(west, index.getLocality(point(5, 5)));
+        Assert.assertEquals(east, index.getLocality(point(15, 5)));
+        Assert.assertNull(index.getLocality(point(25, 5)));
+
+        Assert.assertEquals(3, index.getStatistics().getLookups());
+        Assert.assertEquals(2, index.getStatistics().getHits());
+    }
+
+    @Test
+    public void testFirstAddedLocalityWinsOnSharedBorder() {
+        TopographicPlaceAdapter west = locality("0101", square(0, 0, 10));
+        TopographicPlaceAdapter east = locality("0102", square(10, 0, 10));
+
+        Assert.assertEquals(west, new LocalitySpatialIndex(Arrays.asList(west, east)).getLocality(point(10, 5)));
+        Assert.assertEquals(east, new LocalitySpatialIndex(Arrays.asList(east, west)).getLocality(point(10, 5)));
+    }
+
+    @Test
+    public void testEmptyIndex() {
+        Assert.assertNull(new LocalitySpatialIndex(Arrays.asList()).getLocality(point(1, 1)));
+    }
+
+    @Test
+    public void testCellCacheGivesSameResultAsPolygonTest() {
+        TopographicPlaceAdapter west = locality("0101", square(10, 59, 0.5));
+        TopographicPlaceAdapter east = locality("0102", square(10.5, 59, 0.5));
+        LocalitySpatialIndex exact = new LocalitySpatialIndex(Arrays.asList(west, east));
+        LocalitySpatialIndex cached = new LocalitySpatialIndex(Arrays.asList(west, east), 5, 1000);
+
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            Point point = point(9.9 + random.nextDouble() * 1.2, 58.9 + random.nextDouble() * 0.7);
+            Assert.assertEquals(exact.getLocality(point), cached.getLocality(point));
+        }
+        // Points exactly on the shared border
+        for (int i = 0; i < 100; i++) {
+            Point point = point(10.5, 59 + random.nextDouble() * 0.5);
+            Assert.assertEquals(west, cached.getLocality(point));
+        }
+
+        LocalitySpatialIndex.LookupStatistics statistics = cached.getStatistics();
+        Assert.assertEquals(10100, statistics.getCellHits() + statistics.getCellMisses());
+        Assert.assertTrue(statistics.getCellHits() > statistics.getCellMisses());
+        Assert.assertTrue(statistics.getBorderCellLookups() > 0);
+        Assert.assertTrue(statistics.getPolygonTests() < exact.getStatistics().getPolygonTests());
+    }
+
+    @Test
+    public void testCellCacheIsNotUsedForProjectedCoordinates() {
+        TopographicPlaceAdapter locality = locality("0101", square(200000, 6600000, 1000));
+        LocalitySpatialIndex index = new LocalitySpatialIndex(Arrays.asList(locality), 6, 1000);
+
+        Assert.assertEquals(locality, index.getLocality(point(200500, 6600500)));
+        Assert.assertEquals(0, index.getStatistics().getCellMisses());
+    }
+
+    private TopographicPlaceAdapter locality(String id, Polygon polygon) {
+        TopographicPlaceAdapter locality = Mockito.mock(TopographicPlaceAdapter.class);
+        Mockito.when(locality.getId()).thenReturn(id);
+        Mockito.when(locality.getDefaultGeometry()).thenReturn(polygon);
+        return locality;
+    }
+
+    private Polygon square(double x, double y, double size) {
+        return geometryFactory.createPolygon(new Coordinate[]{new Coordinate(x, y), new Coordinate(x + size, y),
+                                                                     new Coordinate(x + size, y + size), new Coordinate(x, y + size), new Coordinate(x, y)});
+    }
+
+    private Point point(double x, double y) {
+        return geometryFactory.createPoint(new Coordinate(x, y));
+    }
+}
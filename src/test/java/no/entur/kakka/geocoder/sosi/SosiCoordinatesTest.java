@@ -0,0 +1,59 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.sosi;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import no.vegvesen.nvdb.sosi.document.SosiElement;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class SosiCoordinatesTest {
+
+    @Test
+    public void testCollectAndLookupCoordinatesForRef() throws Exception {
+        SosiCoordinates coordinates;
+        try (SosiElementReader reader = new SosiElementReader(new FileInputStream("src/test/resources/no/entur/kakka/geocoder/sosi/SosiTest.sos"))) {
+            coordinates = new SosiCoordinates(reader.getHead());
+            SosiElement sosiElement;
+            while ((sosiElement = reader.next()) != null) {
+                coordinates.collectCoordinates(sosiElement);
+            }
+        }
+
+        Assert.assertEquals(3, coordinates.getPointCount(633));
+        Assert.assertEquals(3, coordinates.getPointCount(135));
+        Assert.assertEquals(-1, coordinates.getPointCount(651));
+
+        List<Coordinate> forward = new ArrayList<>();
+        coordinates.addCoordinatesForRef(633, false, forward);
+        List<Coordinate> reversed = new ArrayList<>();
+        coordinates.addCoordinatesForRef(633, true, reversed);
+
+        Assert.assertEquals(3, forward.size());
+        // Converted to lon/lat within Norway
+        Assert.assertTrue(forward.get(0).y > 57 && forward.get(0).y < 72);
+        Assert.assertTrue(forward.get(0).x > 4 && forward.get(0).x < 32);
+        Collections.reverse(reversed);
+        Assert.assertEquals(forward, reversed);
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+package no.entur.kakka.geocoder.sosi;
+
+import no.vegvesen.nvdb.sosi.document.SosiElement;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class SosiElementPropertiesTest {
+
+    @Test
+    public void testLookupByPath() throws Exception {
+        SosiElementProperties properties;
+        try (SosiElementReader reader = new SosiElementReader(new FileInputStream("src/test/resources/no/entur/kakka/geocoder/sosi/placeNames.sos"))) {
+            properties = new SosiElementProperties(reader.next());
+        }
+
+        Assert.assertEquals("Sted", properties.get("OBJTYPE"));
+        Assert.assertEquals("Sted.1", properties.get("IDENT", "LOKALID"));
+        Assert.assertEquals("1026", properties.get("KOMMUNE", "KOMMUNENUMMER"));
+        Assert.assertEquals("Stornesodden", properties.get("STEDSNAVN", "SKRIVEMÅTE", "LANGNAVN"));
+        Assert.assertEquals("godkjent", properties.get("STEDSNAVN", "SKRIVEMÅTE", "SKRIVEMÅTESTATUS"));
+
+        Assert.assertNull(properties.get("SKRIVEMÅTE", "SKRIVEMÅTESTATUS"));
+        Assert.assertNull(properties.get("UNKNOWN"));
+    }
+
+    @Test
+    public void testRepeatedSubElements() throws Exception {
+        String sosi = ".HODE\n..TEGNSETT UTF-8\n"
+                              + ".FLATE 1:\n..OBJTYPE Kommune\n..KOMMUNENAVN\n...NAVN \"Kárášjohka\"\n...SPRÅK \"sme\"\n..KOMMUNENAVN\n...NAVN \"Karasjok\"\n...SPRÅK \"nor\"\n.SLUTT\n";
+        SosiElementProperties properties;
+        try (SosiElementReader reader = new SosiElementReader(new ByteArrayInputStream(sosi.getBytes(StandardCharsets.UTF_8)))) {
+            properties = new SosiElementProperties(reader.next());
+        }
+
+        List<SosiElement> names = properties.getSubElements("KOMMUNENAVN");
+        Assert.assertEquals(2, names.size());
+        Assert.assertEquals("Karasjok", new SosiElementProperties(names.get(1)).get("NAVN"));
+        // Path lookup follows the first element with a name, as findSubElement
+        Assert.assertEquals("Kárášjohka", properties.get("KOMMUNENAVN", "NAVN"));
+
+        Assert.assertTrue(properties.getSubElements("UNKNOWN").isEmpty());
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.repository;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class LocalBlobCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testUnchangedBlobIsReadFromCache() throws Exception {
+        LocalBlobCache cache = cache(1);
+        AtomicInteger downloads = new AtomicInteger();
+
+        Assert.assertEquals("content", read(cache.getBlob("a", 1L, md5("content"), 7, download("content", downloads))));
+        Assert.assertEquals("content", read(cache.getBlob("a", 1L, md5("content"), 7, download("content", downloads))));
+
+        Assert.assertEquals(1, downloads.get());
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testChangedBlobIsDownloadedAgain() throws Exception {
+        LocalBlobCache cache = cache(1);
+        AtomicInteger downloads = new AtomicInteger();
+
+        read(cache.getBlob("a", 1L, md5("old"), 3, download("old", downloads)));
+        Assert.assertEquals("new", read(cache.getBlob("a", 2L, md5("new"), 3, download("new", downloads))));
+
+        Assert.assertEquals(2, downloads.get());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() throws Exception {
+        LocalBlobCache cache = cache(1);
+        AtomicInteger downloads = new AtomicInteger();
+        String content = new String(new char[400 * 1024]).replace('\0', 'x');
+
+        read(cache.getBlob("a", 1L, md5(content), content.length(), download(content, downloads)));
+        read(cache.getBlob("b", 1L, md5(content), content.length(), download(content, downloads)));
+        read(cache.getBlob("a", 1L, md5(content), content.length(), download(content, downloads)));
+        read(cache.getBlob("c", 1L, md5(content), content.length(), download(content, downloads)));
+        Assert.assertEquals(3, downloads.get());
+        Assert.assertTrue(cache.getSize() <= 1024 * 1024);
+
+        // b was least recently used
+        read(cache.getBlob("a", 1L, md5(content), content.length(), download(content, downloads)));
+        Assert.assertEquals(3, downloads.get());
+        read(cache.getBlob("b", 1L, md5(content), content.length(), download(content, downloads)));
+        Assert.assertEquals(4, downloads.get());
+    }
+
+    @Test
+    public void testEntriesArePickedUpAfterRestart() throws Exception {
+        AtomicInteger downloads = new AtomicInteger();
+        read(cache(1).getBlob("a", 1L, md5("content"), 7, download("content", downloads)));
+        read(cache(1).getBlob("a", 1L, md5("content"), 7, download("content", downloads)));
+
+        Assert.assertEquals(1, downloads.get());
+    }
+
+    @Test
+    public void testContentNotMatchingDigestIsRejected() throws Exception {
+        LocalBlobCache cache = cache(1);
+        try {
+            cache.getBlob("a", 1L, md5("expected"), 8, download("corrupt!", new AtomicInteger()));
+            Assert.fail("Expected digest mismatch to be rejected");
+        } catch (RuntimeException e) {
+            Assert.assertEquals(0, cache.getSize());
+        }
+        File[] files = temporaryFolder.getRoot().listFiles();
+        Assert.assertEquals(0, files.length);
+    }
+
+    @Test
+    public void testInvalidEntryIsDownloadedAgain() throws Exception {
+        LocalBlobCache cache = cache(1);
+        AtomicInteger downloads = new AtomicInteger();
+        read(cache.getBlob("a", 1L, md5("content"), 7, download("content", downloads)));
+        for (File file : temporaryFolder.getRoot().listFiles()) {
+            file.delete();
+        }
+
+        Assert.assertEquals("content", read(cache.getBlob("a", 1L, md5("content"), 7, download("content", downloads))));
+        Assert.assertEquals(2, downloads.get());
+    }
+
+    private LocalBlobCache cache(long maxSizeMb) {
+        return new LocalBlobCache(true, temporaryFolder.getRoot().getAbsolutePath(), maxSizeMb);
+    }
+
+    private Supplier<InputStream> download(String content, AtomicInteger downloads) {
+        return () -> {
+            downloads.incrementAndGet();
+            return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    private String md5(String content) {
+        return Base64.getEncoder().encodeToString(DigestUtils.md5(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private String read(InputStream in) throws Exception {
+        try (InputStream stream = in) {
+            return IOUtils.toString(stream, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed under the EUPL, Version 1.2 or – as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ *   https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ */
+
+
+package no.entur.kakka.routes.file;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ZipEntryIteratorTest {
+
+    @Test
+    public void testOnlyMatchingEntriesAreReturned() throws Exception {
+        byte[] archive = zip("dir/", null, "dir/a.sos", "a", "b.csv", "b", "c.SOS", "c");
+
+        List<String> names = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        try (ZipEntryIterator entries = new ZipEntryIterator(new ByteArrayInputStream(archive), "sos")) {
+            while (entries.hasNext()) {
+                ZipEntryIterator.Entry entry = entries.next();
+                names.add(entry.getName());
+                try (InputStream in = entry.getInputStream()) {
+                    contents.add(IOUtils.toString(in, StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        Assert.assertEquals(2, names.size());
+        Assert.assertEquals("dir/a.sos", names.get(0));
+        Assert.assertEquals("c.SOS", names.get(1));
+        Assert.assertEquals("a", contents.get(0));
+        Assert.assertEquals("c", contents.get(1));
+    }
+
+    @Test
+    public void testUnsafeEntryNameIsNotResolvedAgainstFileSystem() throws Exception {
+        byte[] archive = zip("../../evil.sos", "x");
+
+        try (ZipEntryIterator entries = new ZipEntryIterator(new ByteArrayInputStream(archive), "sos")) {
+            ZipEntryIterator.Entry entry = entries.next();
+            Assert.assertEquals("evil.sos", entry.getFileName());
+            Assert.assertEquals("x", IOUtils.toString(entry.getInputStream(), StandardCharsets.UTF_8));
+            Assert.assertFalse(entries.hasNext());
+        }
+    }
+
+    @Test
+    public void testSkipsUnreadRemainderOfEntry() throws Exception {
+        byte[] archive = zip("a.sos", "first", "b.sos", "second");
+
+        try (ZipEntryIterator entries = new ZipEntryIterator(new ByteArrayInputStream(archive), "sos")) {
+            Assert.assertEquals('f', entries.next().getInputStream().read());
+            Assert.assertEquals("second", IOUtils.toString(entries.next().getInputStream(), StandardCharsets.UTF_8));
+            Assert.assertFalse(entries.hasNext());
+        }
+    }
+
+    @Test
+    public void testHasNextDoesNotSkipUnreadEntry() throws Exception {
+        byte[] archive = zip("a.sos", "first", "b.sos", "second");
+
+        try (ZipEntryIterator entries = new ZipEntryIterator(new ByteArrayInputStream(archive), "sos")) {
+            ZipEntryIterator.Entry first = entries.next();
+            Assert.assertTrue(entries.hasNext());
+            Assert.assertEquals("first", IOUtils.toString(first.getInputStream(), StandardCharsets.UTF_8));
+            Assert.assertTrue(entries.hasNext());
+            ZipEntryIterator.Entry second = entries.next();
+            Assert.assertTrue(entries.hasNext());
+            Assert.assertEquals("second", IOUtils.toString(second.getInputStream(), StandardCharsets.UTF_8));
+            Assert.assertFalse(entries.hasNext());
+        }
+    }
+
+    @Test
+    public void testNextReturnsNullAfterOptimisticHasNextOnLastEntry() throws Exception {
+        byte[] archive = zip("a.sos", "only");
+
+        try (ZipEntryIterator entries = new ZipEntryIterator(new ByteArrayInputStream(archive), "sos")) {
+            entries.next();
+            Assert.assertTrue(entries.hasNext());
+            Assert.assertNull(entries.next());
+            Assert.assertFalse(entries.hasNext());
+        }
+    }
+
+    @Test
+    public void testStreamingSplitOfMultiEntryArchive() throws Exception {
+        Map<String, String> contents = split(zip("a.csv", "first", "b.txt", "ignored", "c.csv", "second", "d.csv", "third"));
+
+        Assert.assertEquals(3, contents.size());
+        Assert.assertEquals("first", contents.get("a.csv"));
+        Assert.assertEquals("second", contents.get("c.csv"));
+        Assert.assertEquals("third", contents.get("d.csv"));
+    }
+
+    @Test
+    public void testStreamingSplitOfSingleEntryArchive() throws Exception {
+        Map<String, String> contents = split(zip("addresses.csv", "address content"));
+
+        Assert.assertEquals(1, contents.size());
+        Assert.assertEquals("address content", contents.get("addresses.csv"));
+    }
+
+    /**
+     * Split archive the same way as the Pelias zip archive route, collecting the content read per entry name.
+     */
+    private Map<String, String> split(byte[] archive) throws Exception {
+        Map<String, String> contents = new LinkedHashMap<>();
+        CamelContext context = new DefaultCamelContext();
+        context.addRoutes(new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("direct:splitZip")
+                        .process(e -> e.getIn().setBody(new ZipEntryIterator(e.getIn().getBody(InputStream.class), "csv")))
+                        .split(body()).streaming().stopOnException()
+                        .setHeader("entryName", simple("${body.name}"))
+                        .process(e -> e.getIn().setBody(e.getIn().getBody(ZipEntryIterator.Entry.class).getInputStream()))
+                        .process(e -> contents.put(e.getIn().getHeader("entryName", String.class),
+                                IOUtils.toString(e.getIn().getBody(InputStream.class), StandardCharsets.UTF_8)))
+                        .end();
+            }
+        });
+        context.start();
+        try {
+            Exchange exchange = context.createProducerTemplate().request("direct:splitZip", e -> e.getIn().setBody(new ByteArrayInputStream(archive)));
+            Assert.assertNull(exchange.getException());
+        } finally {
+            context.stop();
+        }
+        return contents;
+    }
+
+    private byte[] zip(String... namesAndContents) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOut = new ZipOutputStream(out)) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                zipOut.putNextEntry(new ZipEntry(namesAndContents[i]));
+                if (namesAndContents[i + 1] != null) {
+                    zipOut.write(namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8));
+                }
+                zipOut.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+}